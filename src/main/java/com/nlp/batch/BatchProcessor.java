@@ -0,0 +1,277 @@
+package com.nlp.batch;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nlp.correction.Damm;
+import com.nlp.correction.Detector;
+import com.nlp.correction.Hamming;
+import com.nlp.correction.Luhn;
+import com.nlp.correction.Mod97;
+import com.nlp.correction.Verhoeff;
+import com.nlp.normalize.Normalizer;
+import com.nlp.normalize.Numerics;
+import com.nlp.spelling.SmartSpeller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Non-interactive batch runner that streams a file (or stdin) through one of the command-line tools.
+ *
+ * Lines are read in chunks through large NIO buffers, processed on a worker pool with a bounded number of chunks in
+ * flight, and written in input order.  Lines that fail are written as "!" followed by the error message.
+ *
+ * @author Kevin Crosby.
+ */
+public final class BatchProcessor {
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int CHUNK_SIZE = 1 << 10; // lines per task
+  private static final int CHUNKS_PER_THREAD = 4; // bound on chunks in flight
+  private static final String STANDARD_STREAM = "-";
+  private static final String ERROR = "!";
+
+  private final Function<String, String> function;
+  private final int threads;
+  private final AtomicLong errors;
+
+  public BatchProcessor(final Function<String, String> function, final int threads) {
+    this.function = function;
+    this.threads = threads;
+    errors = new AtomicLong();
+  }
+
+  /**
+   * Tools available to the batch runner.
+   */
+  public enum Tool {
+    SMARTSPELLER(() -> {
+      SmartSpeller speller = SmartSpeller.getInstance();
+      return line -> speller.process(line).keySet().stream().findFirst().orElse(line);
+    }),
+    NUMERICS(() -> Numerics::toString),
+    NORMALIZER(() -> Normalizer::normalize),
+    LUHN(() -> detect(Luhn.getInstance())),
+    DAMM(() -> detect(Damm.getInstance())),
+    VERHOEFF(() -> detect(Verhoeff.getInstance())),
+    MOD97(() -> detect(Mod97.getInstance())),
+    HAMMING(() -> {
+      Hamming hamming = Hamming.getInstance();
+      return line -> {
+        String[] fields = line.trim().split("\\s+");
+        long number = Long.parseLong(fields[0]);
+        if (fields.length > 1) {
+          return Long.toString(hamming.correct(number, fields[1]));
+        }
+        int[] checks = hamming.generate(number); // c0, c1, c11
+        StringBuilder builder = new StringBuilder(checks.length);
+        for (int i = checks.length - 1; i >= 0; --i) { // stored as c11, c1, c0, as correct reads them
+          builder.append(checks[i] == 10 ? 'X' : Character.forDigit(checks[i], 10));
+        }
+        return builder.toString();
+      };
+    });
+
+    private final Supplier<Function<String, String>> supplier;
+
+    Tool(final Supplier<Function<String, String>> supplier) {
+      this.supplier = supplier;
+    }
+
+    public Function<String, String> function() {
+      return supplier.get();
+    }
+
+    // check digit of number, and whether number already ends in a valid check digit
+    private static Function<String, String> detect(final Detector detector) {
+      return line -> {
+        long number = Long.parseLong(line.trim());
+        return String.format("%d\t%s", detector.generate(number), detector.validate(number));
+      };
+    }
+  }
+
+  /**
+   * Process file to file, where "-" stands for stdin or stdout.  Results for stdout are written to its file descriptor
+   * directly, bypassing {@link System#out}, so a caller may send logs of tools elsewhere, as {@link #main} does.
+   *
+   * @param input  Input file.
+   * @param output Output file.
+   * @return Number of lines processed.
+   */
+  public long process(final String input, final String output) {
+    ReadableByteChannel in = null;
+    WritableByteChannel out = null;
+    try {
+      in = STANDARD_STREAM.equals(input)
+          ? Channels.newChannel(System.in)
+          : FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+      if (STANDARD_STREAM.equals(output)) {
+        System.out.flush();
+        out = new FileOutputStream(FileDescriptor.out).getChannel();
+      } else {
+        out = open(Paths.get(output));
+      }
+      return process(in, out);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      close(in, input); // standard streams are left open
+      close(out, output);
+    }
+  }
+
+  private static void close(final Channel channel, final String name) {
+    if (channel != null && !STANDARD_STREAM.equals(name)) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private static FileChannel open(final Path path) throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      parent.toFile().mkdirs();
+    }
+    return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  /**
+   * Process channel to channel, preserving line order.
+   *
+   * @param in  Channel of UTF-8 lines.
+   * @param out Channel for UTF-8 results, one line per input line.
+   * @return Number of lines processed.
+   * @throws IOException If reading or writing fails.
+   */
+  public long process(final ReadableByteChannel in, final WritableByteChannel out) throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("batch-%d").setDaemon(true).build());
+    Queue<Future<List<String>>> pending = Queues.newArrayDeque();
+    int inFlight = CHUNKS_PER_THREAD * threads;
+    long count = 0;
+    try {
+      BufferedReader reader = new BufferedReader(Channels.newReader(in, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE), BUFFER_SIZE);
+      Writer writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+      List<String> chunk = Lists.newArrayListWithCapacity(CHUNK_SIZE);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        chunk.add(line);
+        if (chunk.size() == CHUNK_SIZE) {
+          count += chunk.size();
+          submit(pool, pending, chunk);
+          chunk = Lists.newArrayListWithCapacity(CHUNK_SIZE);
+          if (pending.size() >= inFlight) {
+            write(pending.remove(), writer); // blocks reading until oldest chunk is done
+          }
+        }
+      }
+      if (!chunk.isEmpty()) {
+        count += chunk.size();
+        submit(pool, pending, chunk);
+      }
+      while (!pending.isEmpty()) {
+        write(pending.remove(), writer);
+      }
+      writer.flush();
+    } finally {
+      pool.shutdownNow();
+    }
+    return count;
+  }
+
+  public long errors() {
+    return errors.get();
+  }
+
+  private void submit(final ExecutorService pool, final Queue<Future<List<String>>> pending, final List<String> chunk) {
+    pending.add(pool.submit(() -> {
+      List<String> results = Lists.newArrayListWithCapacity(chunk.size());
+      for (String line : chunk) {
+        results.add(apply(line));
+      }
+      return results;
+    }));
+  }
+
+  private String apply(final String line) {
+    try {
+      return function.apply(line);
+    } catch (RuntimeException e) {
+      errors.incrementAndGet();
+      return ERROR + e;
+    }
+  }
+
+  private static void write(final Future<List<String>> future, final Writer writer) throws IOException {
+    try {
+      for (String result : future.get()) {
+        writer.write(result);
+        writer.write('\n');
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 1) {
+      String tools = Arrays.stream(Tool.values())
+          .map(Enum::name)
+          .map(String::toLowerCase)
+          .collect(Collectors.joining("|"));
+      System.err.format("Usage: BatchProcessor <%s> [input|-] [output|-] [threads]\n", tools);
+      System.exit(1);
+    }
+    Tool tool = Tool.valueOf(args[0].toUpperCase());
+    String input = args.length > 1 ? args[1] : STANDARD_STREAM;
+    String output = args.length > 2 ? args[2] : STANDARD_STREAM;
+    int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+    PrintStream stdout = System.out;
+    System.setOut(System.err); // tools log to stdout, so keep their logs out of the results, written to it directly
+    try {
+      BatchProcessor processor = new BatchProcessor(tool.function(), threads);
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      long count = processor.process(input, output);
+      stopwatch.stop();
+      System.err.format("Processed %d lines (%d errors): %d milliseconds\n",
+          count, processor.errors(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    } finally {
+      System.setOut(stdout);
+    }
+  }
+}
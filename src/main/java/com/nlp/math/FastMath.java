@@ -0,0 +1,129 @@
+package com.nlp.math;
+
+/**
+ * Table plus polynomial approximations of exp, log and log1p, for ranking where full IEEE precision is not needed.
+ *
+ * Maximum errors, measured against {@link StrictMath} over the ranges swept in FastMathTest:
+ * <ul>
+ * <li>exp:   2 ulps</li>
+ * <li>log:   3 ulps</li>
+ * <li>log1p: 4 ulps</li>
+ * </ul>
+ * Arguments outside the normal range (NaN, infinities, zero, subnormals, overflow) are delegated to
+ * {@link StrictMath}, so special values behave exactly as in {@link Math}.  Only log1p is public, as only it
+ * measured faster than {@link Math}; exp and log stay package private until a caller needs them.
+ *
+ * @author Kevin Crosby.
+ */
+public final class FastMath {
+  private static final int TABLE_BITS = 7;
+  private static final int TABLE_SIZE = 1 << TABLE_BITS;
+
+  // ln(2) split so that k * LN2_HI is exact for |k| < 2^21 (from fdlibm)
+  private static final double LN2_HI = 6.93147180369123816490e-01;
+  private static final double LN2_LO = 1.90821492927058770002e-10;
+  private static final double LN2 = LN2_HI + LN2_LO;
+
+  private static final double N_OVER_LN2 = TABLE_SIZE / LN2;
+  private static final double LN2_OVER_N_HI = LN2_HI / TABLE_SIZE; // exact, since TABLE_SIZE is a power of two
+  private static final double LN2_OVER_N_LO = LN2_LO / TABLE_SIZE;
+
+  private static final double EXP_MIN = -745.1332191019411; // below this exp underflows to zero
+  private static final double EXP_MAX = 709.782712893384; // above this exp overflows to infinity
+
+  private static final double NEAR_ONE = 0x1p-8; // |x - 1| below which log is computed directly by series
+
+  private static final double[] EXP_TABLE = new double[TABLE_SIZE]; // 2^(j / N)
+  private static final double[] LOG_TABLE = new double[TABLE_SIZE]; // log(c_j), or log(c_j / 2) if c_j > 3/2
+  private static final double[] INV_TABLE = new double[TABLE_SIZE]; // 1 / c_j
+
+  static {
+    for (int j = 0; j < TABLE_SIZE; ++j) {
+      EXP_TABLE[j] = StrictMath.pow(2, (double) j / TABLE_SIZE);
+      double c = 1 + (j + 0.5) / TABLE_SIZE;
+      LOG_TABLE[j] = StrictMath.log(j < TABLE_SIZE / 2 ? c : c / 2); // keeps log(x) near x = 1 free of cancellation
+      INV_TABLE[j] = 1 / c;
+    }
+  }
+
+  private FastMath() {
+  }
+
+  /**
+   * Approximate e^x.
+   *
+   * x = (k N + j) ln(2) / N + r, with |r| ≤ ln(2) / 2N, so e^x = 2^k 2^(j/N) e^r and e^r is a degree 5 polynomial.
+   *
+   * @param x Exponent.
+   * @return Approximation of e^x.
+   */
+  static double exp(double x) {
+    if (!(x > EXP_MIN && x < EXP_MAX)) {
+      return StrictMath.exp(x);
+    }
+    double kd = Math.rint(x * N_OVER_LN2);
+    double r = (x - kd * LN2_OVER_N_HI) - kd * LN2_OVER_N_LO;
+    long k = (long) kd;
+    int j = (int) (k & (TABLE_SIZE - 1));
+    int e = (int) (k >> TABLE_BITS); // floor division
+    double p = r + r * r * (1.0 / 2 + r * (1.0 / 6 + r * (1.0 / 24 + r * (1.0 / 120)))); // e^r - 1
+    double t = EXP_TABLE[j];
+    double y = t + t * p;
+    if (e < Double.MIN_EXPONENT || e > Double.MAX_EXPONENT) {
+      return Math.scalb(y, e); // subnormal or near overflow
+    }
+    return y * Double.longBitsToDouble((long) (e + 1023) << 52);
+  }
+
+  /**
+   * Approximate natural logarithm.
+   *
+   * x = 2^e m with m in [1, 2) and m = c_j (1 + t) with |t| ≤ 1 / 2N, so log(x) = e ln(2) + log(c_j) + log1p(t) and
+   * log1p(t) is a degree 6 polynomial.  Mantissas above 3/2 are halved (and e incremented), so that arguments just
+   * below a power of two do not cancel against e ln(2).
+   *
+   * @param x Argument.
+   * @return Approximation of log(x).
+   */
+  static double log(double x) {
+    if (!(x >= Double.MIN_NORMAL && x < Double.POSITIVE_INFINITY)) {
+      return StrictMath.log(x);
+    }
+    double f = x - 1;
+    if (Math.abs(f) < NEAR_ONE) {
+      return series(f); // avoid cancellation of log(c_j) against log1p(t)
+    }
+    long bits = Double.doubleToRawLongBits(x);
+    int e = (int) (bits >>> 52) - 1023;
+    long mantissa = bits & 0x000fffffffffffffL;
+    int j = (int) (mantissa >>> (52 - TABLE_BITS));
+    double m = Double.longBitsToDouble(mantissa | 0x3ff0000000000000L);
+    double c = 1 + (j + 0.5) / TABLE_SIZE;
+    double t = (m - c) * INV_TABLE[j]; // m - c is exact
+    e += j >> (TABLE_BITS - 1); // i.e. m / 2 in [3/4, 1)
+    double p = t - t * t * (1.0 / 2 - t * (1.0 / 3 - t * (1.0 / 4 - t * (1.0 / 5 - t * (1.0 / 6)))));
+    return (e * LN2_HI + LOG_TABLE[j]) + (p + e * LN2_LO);
+  }
+
+  /**
+   * Approximate log(1 + x), accurate for small x.
+   *
+   * @param x Argument.
+   * @return Approximation of log1p(x).
+   */
+  public static double log1p(double x) {
+    if (!(x > -1 && x < Double.POSITIVE_INFINITY)) {
+      return StrictMath.log1p(x);
+    }
+    if (Math.abs(x) < NEAR_ONE) {
+      return series(x);
+    }
+    double u = 1 + x;
+    return log(u) + (x - (u - 1)) / u; // correct for rounding of 1 + x
+  }
+
+  // log1p(x) for |x| < 1/256, degree 8 Taylor polynomial
+  private static double series(double x) {
+    return x - x * x * (1.0 / 2 - x * (1.0 / 3 - x * (1.0 / 4 - x * (1.0 / 5 - x * (1.0 / 6 - x * (1.0 / 7 - x * (1.0 / 8)))))));
+  }
+}
@@ -0,0 +1,92 @@
+package com.nlp.math;
+
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+
+/**
+ * Online log-sum-exp accumulator.
+ *
+ * Values are added one at a time; the running sum is kept relative to the largest value seen so far and is rescaled
+ * whenever a new maximum arrives.  Accumulators are not thread safe, but may be merged, e.g. across parallel streams.
+ *
+ * @author Kevin Crosby.
+ */
+public final class LogSumExp {
+  private double max;
+  private double sumExp; // normal space, relative to max
+  private long count;
+
+  public LogSumExp() {
+    max = Double.NEGATIVE_INFINITY;
+    sumExp = 0;
+    count = 0;
+  }
+
+  /**
+   * Log-sum-exp of a stream, in a single pass.
+   *
+   * @param logarithms Values in log space.
+   * @return Logarithm of the sum of exponentials.
+   */
+  public static double of(DoubleStream logarithms) {
+    return logarithms.collect(LogSumExp::new, LogSumExp::add, LogSumExp::merge).value();
+  }
+
+  /**
+   * Collector for boxed streams, mergeable for parallel streams.
+   *
+   * @return Collector of logarithms to their log-sum-exp.
+   */
+  public static Collector<Double, LogSumExp, Double> collector() {
+    return Collector.of(LogSumExp::new, LogSumExp::add, LogSumExp::combine, LogSumExp::value);
+  }
+
+  public void add(double logarithm) {
+    if (logarithm > max) {
+      sumExp = sumExp * exp(max - logarithm) + 1; // rescale to new max
+      max = logarithm;
+    } else if (logarithm == max) {
+      sumExp += 1; // also avoids ∞ - ∞
+    } else {
+      sumExp += exp(logarithm - max);
+    }
+    count++;
+  }
+
+  public void merge(LogSumExp other) {
+    if (other.max > max) {
+      sumExp = sumExp * exp(max - other.max) + other.sumExp;
+      max = other.max;
+    } else if (other.max == max) {
+      sumExp += other.sumExp;
+    } else {
+      sumExp += other.sumExp * exp(other.max - max);
+    }
+    count += other.count;
+  }
+
+  private LogSumExp combine(LogSumExp other) {
+    merge(other);
+    return this;
+  }
+
+  /**
+   * Log-sum-exp of all values added so far.
+   *
+   * @return Logarithm of the sum of exponentials, negative infinity if empty.
+   */
+  public double value() {
+    return count == 0 ? Double.NEGATIVE_INFINITY : log(sumExp) + max; // log space
+  }
+
+  public double max() {
+    return max;
+  }
+
+  public long count() {
+    return count;
+  }
+}
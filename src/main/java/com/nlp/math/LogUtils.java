@@ -12,25 +12,55 @@ import static java.lang.Double.isInfinite;
 import static java.lang.Math.exp;
 import static java.lang.Math.expm1;
 import static java.lang.Math.log;
-import static java.lang.Math.log1p;
 
 /**
  * Logarithm Utilities.
  *
+ * Run with -Dcom.nlp.math.fast=true to opt in to the {@link FastMath} approximation of log1p, measured at 1.5 to 4
+ * times as fast as {@link Math#log1p(double)}.  Its exp and log are no faster than {@link Math}'s intrinsics over
+ * log probabilities, so {@link Math} is used for those.
+ *
  * @author Kevin Crosby.
  */
 public class LogUtils {
+  private static final boolean FAST_MATH = Boolean.getBoolean("com.nlp.math.fast");
+
   private LogUtils() {
   }
 
+  public static double log1p(double x) {
+    return FAST_MATH ? FastMath.log1p(x) : Math.log1p(x);
+  }
+
   public static Collection<Double> expNormalize(Collection<Double> logarithms) {
-    double sumExp = sumExp(logarithms);
+    double max = max(logarithms);
+    double sumExp = sumExp(logarithms, max);
     return logarithms.stream()
-        .map(Math::exp)
-        .map(v -> v / sumExp)
+        .map(v -> exp(v - max) / sumExp)
         .collect(ImmutableList.toImmutableList()); // normal space
   }
 
+  public static double[] expNormalize(double[] logarithms) {
+    double[] normals = new double[logarithms.length];
+    expNormalize(logarithms, 0, logarithms.length, normals, 0);
+    return normals;
+  }
+
+  // destination may be the same array as logarithms to normalize in place
+  public static void expNormalize(double[] logarithms, int offset, int length, double[] destination, int destinationOffset) {
+    double max = max(logarithms, offset, length);
+    double sumExp = 0;
+    for (int i = 0; i < length; ++i) {
+      double v = exp(logarithms[offset + i] - max);
+      destination[destinationOffset + i] = v;
+      sumExp += v;
+    }
+    double inverse = 1 / sumExp;
+    for (int i = 0; i < length; ++i) {
+      destination[destinationOffset + i] *= inverse; // normal space
+    }
+  }
+
   public static Collection<Double> logSumExpNormalize(Collection<Double> logarithms) {
     double logSumExp = logSumExp(logarithms);
     return logarithms.stream()
@@ -38,6 +68,20 @@ public class LogUtils {
         .collect(ImmutableList.toImmutableList()); // log space
   }
 
+  public static double[] logSumExpNormalize(double[] logarithms) {
+    double[] normals = new double[logarithms.length];
+    logSumExpNormalize(logarithms, 0, logarithms.length, normals, 0);
+    return normals;
+  }
+
+  // destination may be the same array as logarithms to normalize in place
+  public static void logSumExpNormalize(double[] logarithms, int offset, int length, double[] destination, int destinationOffset) {
+    double logSumExp = logSumExp(logarithms, offset, length);
+    for (int i = 0; i < length; ++i) {
+      destination[destinationOffset + i] = logarithms[offset + i] - logSumExp; // log space
+    }
+  }
+
   // based on or(p, q) = p + q - p * q in normal space
   public static double logFuzzyOr(double log1, double log2) {
     if (log1 < log2) {
@@ -60,6 +104,24 @@ public class LogUtils {
     }
   }
 
+  public static double logFuzzyOr(double[] logarithms) {
+    return logFuzzyOr(logarithms, 0, logarithms.length);
+  }
+
+  public static double logFuzzyOr(double[] logarithms, int offset, int length) {
+    switch (length) {
+      case 0:
+        return 0;
+      case 1:
+        return logarithms[offset];
+      case 2:
+        return logFuzzyOr(logarithms[offset], logarithms[offset + 1]);
+      default:
+        int half = length / 2;
+        return logFuzzyOr(logFuzzyOr(logarithms, offset, half), logFuzzyOr(logarithms, offset + half, length - half));
+    }
+  }
+
   public static double logDot(List<Double> logarithms1, List<Double> logarithms2) {
     assert logarithms1.size() == logarithms2.size() : "Vectors must be the same size!";
     List<Double> summands = IntStream.range(0, logarithms1.size())
@@ -69,6 +131,26 @@ public class LogUtils {
     return logSumExp(summands); // log space
   }
 
+  public static double logDot(double[] logarithms1, double[] logarithms2) {
+    assert logarithms1.length == logarithms2.length : "Vectors must be the same size!";
+    return logDot(logarithms1, 0, logarithms2, 0, logarithms1.length);
+  }
+
+  public static double logDot(double[] logarithms1, int offset1, double[] logarithms2, int offset2, int length) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < length; ++i) {
+      max = max(max, logarithms1[offset1 + i] + logarithms2[offset2 + i]);
+    }
+    if (isInfinite(max)) {
+      return max;
+    }
+    double sumExp = 0;
+    for (int i = 0; i < length; ++i) {
+      sumExp += exp(logarithms1[offset1 + i] + logarithms2[offset2 + i] - max);
+    }
+    return log(sumExp) + max; // log space
+  }
+
   public static double logSumExp(double log1, double log2) {
     if (log1 < log2) {
       return logSumExp(log2, log1);
@@ -83,8 +165,20 @@ public class LogUtils {
     return log(sumExp) + max; // log space
   }
 
-  private static double sumExp(Collection<Double> logarithms) {
-    return sumExp(logarithms, max(logarithms)); // normal space
+  public static double logSumExp(double[] logarithms) {
+    return logSumExp(logarithms, 0, logarithms.length);
+  }
+
+  public static double logSumExp(double[] logarithms, int offset, int length) {
+    double max = max(logarithms, offset, length);
+    if (isInfinite(max)) {
+      return max;
+    }
+    double sumExp = 0;
+    for (int i = 0; i < length; ++i) {
+      sumExp += exp(logarithms[offset + i] - max);
+    }
+    return log(sumExp) + max; // log space
   }
 
   private static double sumExp(Collection<Double> logarithms, double max) {
@@ -104,4 +198,12 @@ public class LogUtils {
   private static double max(Collection<Double> values) {
     return Collections.max(values);
   }
+
+  private static double max(double[] values, int offset, int length) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < length; ++i) {
+      max = max(max, values[offset + i]);
+    }
+    return max;
+  }
 }
@@ -1,10 +1,8 @@
 package com.nlp.normalize;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
+import com.nlp.text.Tokens;
 
-import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 
@@ -31,34 +29,49 @@ public final class Normalizer {
    * @return Normalized string.
    */
   public static String normalize(final String string) {
-    String[] split = string.toLowerCase().split("\\s+");
-    List<String> tokens = Lists.newArrayList(split[0]);
+    Tokens tokens = Tokens.of(string.toLowerCase());
+    collapse(tokens);
+    return tokens.toString();
+  }
+
+  /**
+   * Collapse duplicate, adjacent, non-numeric unigrams and bigrams in place.
+   *
+   * @param tokens Lowercase tokens to normalize.
+   */
+  public static void collapse(final Tokens tokens) {
+    if (tokens.isEmpty()) {
+      return;
+    }
 
     boolean append;
     boolean remove;
-    int j = 1;
-    for (int i = 1; i < split.length; ++i) {
+    int j = 1; // tokens before j are kept
+    for (int i = 1; i < tokens.size(); ++i) {
       append = false;
       remove = false;
-      String token = split[i];
-      if (CARDINALS.contains(token)) {
+      if (isCardinal(tokens, i)) {
         append = true; // let cardinals through always
       } else {
-        if (!token.equals(tokens.get(j - 1))) {
+        if (!tokens.contentEquals(i, j - 1)) {
           append = true; // let non-duplicate adjacent unigrams through, unless overridden by bigrams below
         }
-        if (j > 2 && !CARDINALS.contains(tokens.get(j - 1)) && token.equals(tokens.get(j - 2)) && tokens.get(j - 1).equals(tokens.get(j - 3))) {
+        if (j > 2 && !isCardinal(tokens, j - 1) && tokens.contentEquals(i, j - 2) && tokens.contentEquals(j - 1, j - 3)) {
           append = false; // reject duplicate adjacent non-numeric bigrams
           remove = true;  // ... in fact remove the last unigram
         }
       }
       if (append) {
-        tokens.add(j++, token);
+        tokens.move(i, j++);
       } else if (remove) {
-        tokens.remove(--j);
+        --j;
       }
     }
-    return Joiner.on(" ").join(tokens);
+    tokens.truncate(j);
+  }
+
+  private static boolean isCardinal(final Tokens tokens, final int i) {
+    return CARDINALS.contains(tokens.text(i));
   }
 
   public static void main(String[] args) {
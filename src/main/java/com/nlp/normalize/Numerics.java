@@ -1,12 +1,11 @@
 package com.nlp.normalize;
 
-import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Queues;
+import com.nlp.text.Tokens;
 
 import java.util.Deque;
 import java.util.List;
@@ -26,8 +25,6 @@ public final class Numerics {
   private static final Pattern IS_DECIMAL = Pattern.compile("^(\\$)?(-?\\d+)\\.(\\d+)$");
   private static final Pattern IS_CARDINAL = Pattern.compile("^(\\$)?(-?\\d+)$");
   private static final Pattern IS_ORDINAL = Pattern.compile("^(-?\\d+(?:st|nd|rd|th))$");
-  private static final Splitter SPLITTER = Splitter.onPattern("\\s+").trimResults().omitEmptyStrings();
-  private static final Joiner JOINER = Joiner.on(" ");
 
   private static final Set<Long> PRETEENS = ImmutableSet.of(11L, 12L, 13L);
   private static final long BILLION = 1_000_000_000;
@@ -196,45 +193,58 @@ public final class Numerics {
    * @return Normalized string.
    */
   public static String toString(final String string) {
-    List<String> tokens = SPLITTER.splitToList(string);
+    Tokens tokens = Tokens.of(string);
+    verbalize(tokens);
+    return tokens.toString();
+  }
+
+  /**
+   * Replace decimal, cardinal, and ordinal number tokens by words in place.
+   *
+   * @param tokens Tokens possibly containing numbers.
+   */
+  public static void verbalize(final Tokens tokens) {
     List<String> words = Lists.newArrayList();
+    int i = 0;
+    while (i < tokens.size()) {
+      if (HAS_DIGIT.matcher(tokens.get(i)).find()) { // tokens without digits are never materialized
+        words.clear();
+        if (verbalize(tokens.text(i), words)) {
+          i += tokens.replace(i, words);
+          continue;
+        }
+      }
+      ++i;
+    }
+  }
 
-    for (String token : tokens) {
-      Matcher matcher = HAS_DIGIT.matcher(token);
-      boolean match = matcher.find();
+  private static boolean verbalize(final String token, final List<String> words) {
+    Matcher matcher = IS_DECIMAL.matcher(token);
+    boolean match = matcher.find();
+    if (match) {
+      boolean money = Optional.ofNullable(matcher.group(1)).isPresent();
+      long whole = Long.parseLong(matcher.group(2));
+      long fractional = Long.parseLong(matcher.group(3));
+      decimal(money, whole, fractional, words);
+    }
+    if (!match) {
+      matcher = IS_CARDINAL.matcher(token);
+      match = matcher.find();
       if (match) {
-        matcher = IS_DECIMAL.matcher(token);
-        match = matcher.find();
-        if (match) {
-          boolean money = Optional.ofNullable(matcher.group(1)).isPresent();
-          long whole = Long.parseLong(matcher.group(2));
-          long fractional = Long.parseLong(matcher.group(3));
-          decimal(money, whole, fractional, words);
-        }
-        if (!match) {
-          matcher = IS_CARDINAL.matcher(token);
-          match = matcher.find();
-          if (match) {
-            boolean money = Optional.ofNullable(matcher.group(1)).isPresent();
-            long cardinal = Long.parseLong(matcher.group(2));
-            cardinal(money, cardinal, words);
-          }
-        }
-        if (!match) {
-          matcher = IS_ORDINAL.matcher(token);
-          match = matcher.find();
-          if (match) {
-            String ordinal = matcher.group(1);
-            ordinal(ordinal, words);
-          }
-        }
+        boolean money = Optional.ofNullable(matcher.group(1)).isPresent();
+        long cardinal = Long.parseLong(matcher.group(2));
+        cardinal(money, cardinal, words);
       }
-      if (!match) {
-        words.add(token);
+    }
+    if (!match) {
+      matcher = IS_ORDINAL.matcher(token);
+      match = matcher.find();
+      if (match) {
+        String ordinal = matcher.group(1);
+        ordinal(ordinal, words);
       }
     }
-
-    return JOINER.join(words);
+    return match;
   }
 
   //public String toNumeric(String string) {
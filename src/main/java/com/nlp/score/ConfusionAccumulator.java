@@ -0,0 +1,184 @@
+package com.nlp.score;
+
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread safe, incremental confusion matrix for online evaluation.
+ *
+ * Many workers may {@link #record(String, String)} concurrently, each answer or batch of answers into the cells of the
+ * current epoch, under the epoch's shared lock, so writers never block one another.  A {@link #snapshot()} swaps in a
+ * fresh epoch, waits only for the writes already in the old one, and drains it into the running totals, so it is
+ * point-in-time: every batch recorded is either wholly in it or wholly out of it.  Writers arriving meanwhile go to
+ * the fresh epoch, or, if they caught the old one as it was swapped, wait for the drain and move on to the new one.
+ *
+ * @author Kevin Crosby.
+ */
+public class ConfusionAccumulator {
+  private final ConcurrentMap<String, Integer> ids; // interned categories
+  private final List<String> categories; // id to category
+  private volatile Epoch epoch; // written to now
+  private final Map<Long, Long> totals; // of drained epochs, guarded by this
+
+  public ConfusionAccumulator() {
+    ids = Maps.newConcurrentMap();
+    categories = new CopyOnWriteArrayList<>();
+    epoch = new Epoch();
+    totals = Maps.newHashMap();
+  }
+
+  /**
+   * Cells written since the last snapshot, shared by writers, and held exclusively while drained.
+   */
+  private static final class Epoch {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentMap<Long, LongAdder> cells = Maps.newConcurrentMap(); // gold id high, system id low
+
+    private LongAdder cell(final long key) {
+      LongAdder cell = cells.get(key); // avoid locking on the common path
+      return cell != null ? cell : cells.computeIfAbsent(key, k -> new LongAdder());
+    }
+  }
+
+  /**
+   * Record one answer.
+   *
+   * @param gold   Correct classification answer.
+   * @param system Actual answer.
+   */
+  public void record(final String gold, final String system) {
+    record(gold, system, 1);
+  }
+
+  /**
+   * Record several identical answers.
+   *
+   * @param gold   Correct classification answer.
+   * @param system Actual answer.
+   * @param count  Number of answers.
+   */
+  public void record(final String gold, final String system, final long count) {
+    long key = key(gold, system);
+    Epoch epoch = enter();
+    try {
+      epoch.cell(key).add(count);
+    } finally {
+      epoch.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Record a batch of answers, e.g. the words of a sentence, all in the same snapshots.
+   *
+   * @param golds   Correct classification answers.
+   * @param systems Actual answers, aligned with the correct ones.
+   */
+  public void record(final List<String> golds, final List<String> systems) {
+    if (golds.size() != systems.size()) {
+      throw new IllegalArgumentException("Answers not aligned: " + golds.size() + " gold, " + systems.size() + " system");
+    }
+    long[] keys = new long[golds.size()];
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i] = key(golds.get(i), systems.get(i));
+    }
+    Epoch epoch = enter();
+    try {
+      for (long key : keys) {
+        epoch.cell(key).increment();
+      }
+    } finally {
+      epoch.lock.readLock().unlock();
+    }
+  }
+
+  private long key(final String gold, final String system) {
+    return (long) intern(gold) << Integer.SIZE | intern(system);
+  }
+
+  // current epoch, with its shared lock held
+  private Epoch enter() {
+    while (true) {
+      Epoch epoch = this.epoch;
+      epoch.lock.readLock().lock();
+      if (epoch == this.epoch) {
+        return epoch;
+      }
+      epoch.lock.readLock().unlock(); // drained meanwhile, so try the next one
+    }
+  }
+
+  private int intern(final String category) {
+    Integer id = ids.get(category);
+    if (id != null) {
+      return id;
+    }
+    synchronized (categories) { // only new categories serialize
+      return ids.computeIfAbsent(category, c -> {
+        categories.add(c);
+        return categories.size() - 1;
+      });
+    }
+  }
+
+  // swap in a fresh epoch and add the old one to the totals, once its writes in progress are done
+  private void drain() {
+    Epoch old = epoch;
+    epoch = new Epoch();
+    old.lock.writeLock().lock();
+    try {
+      for (Entry<Long, LongAdder> cell : old.cells.entrySet()) {
+        long count = cell.getValue().sum();
+        if (count != 0) {
+          totals.merge(cell.getKey(), count, Long::sum);
+        }
+      }
+    } finally {
+      old.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Point-in-time confusion matrix, taken without stopping writers.  Cells never counted are left out, so they add no
+   * gold row or column.
+   *
+   * @return Confusion matrix of all answers recorded so far.
+   */
+  public synchronized ConfusionMatrix matrix() {
+    drain();
+    ConfusionMatrix.Builder builder = ConfusionMatrix.builder();
+    for (Entry<Long, Long> cell : totals.entrySet()) {
+      long key = cell.getKey();
+      String gold = categories.get((int) (key >>> Integer.SIZE));
+      String system = categories.get((int) key);
+      builder.add(gold, system, cell.getValue());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Point-in-time scores, taken without stopping writers.
+   *
+   * @return Scores of all answers recorded so far.
+   */
+  public Scores snapshot() {
+    return new Scores(matrix());
+  }
+
+  /**
+   * Total number of answers recorded so far, as of a point in time.
+   *
+   * @return Number of answers.
+   */
+  public synchronized long total() {
+    drain();
+    return totals.values().stream().mapToLong(Long::longValue).sum();
+  }
+}
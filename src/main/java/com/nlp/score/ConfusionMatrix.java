@@ -0,0 +1,296 @@
+package com.nlp.score;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Confusion matrix over interned categories, with row and column marginals computed once.
+ * Rows are the correct classification answers (gold) and columns are the actual answers (system).
+ *
+ * Small matrices are stored densely; large ones (or on request) in compressed sparse row form, so memory is
+ * proportional to the number of non-zero cells rather than quadratic in the number of categories.
+ *
+ * @author Kevin Crosby.
+ */
+public final class ConfusionMatrix {
+  private static final int DENSE_LIMIT = 1 << 11; // categories, i.e. at most 32 MB of dense counts
+  private static final long MAX_DENSE_CELLS = Integer.MAX_VALUE - 8; // largest array the VM allows
+
+  /**
+   * Visitor of non-zero cells.
+   */
+  @FunctionalInterface
+  public interface CellConsumer {
+    void accept(int gold, int system, long count);
+  }
+
+  private final List<String> categories; // sorted, index is category id
+  private final Map<String, Integer> indices;
+  private final long[] counts; // row major, n x n, or null if sparse
+  private final int[] rowOffsets; // compressed sparse rows, or null if dense
+  private final int[] columnIds; // sorted within each row
+  private final long[] values;
+  private final boolean[] gold; // category has a gold row
+  private final int rows; // number of gold rows
+  private final int cells; // number of non-zero cells
+  private final long[] rowTotals;
+  private final long[] columnTotals; // over gold rows
+  private final int[] columnEntries; // number of gold rows with an entry in column
+
+  private ConfusionMatrix(final Builder builder) {
+    categories = ImmutableList.sortedCopyOf(Sets.union(builder.rows, builder.columns));
+    int n = categories.size();
+    ImmutableMap.Builder<String, Integer> indexBuilder = ImmutableMap.builderWithExpectedSize(n);
+    for (int i = 0; i < n; ++i) {
+      indexBuilder.put(categories.get(i), i);
+    }
+    indices = indexBuilder.build();
+
+    boolean sparse = (long) n * n > MAX_DENSE_CELLS // too large for one array, even on request
+        || (builder.sparse != null ? builder.sparse : n > DENSE_LIMIT);
+    counts = sparse ? null : new long[n * n];
+    gold = new boolean[n];
+    rowTotals = new long[n];
+    columnTotals = new long[n];
+    columnEntries = new int[n];
+    for (String row : builder.rows) {
+      gold[indices.get(row)] = true;
+    }
+    rows = builder.rows.size();
+
+    int nonZeros = 0;
+    for (Map<String, Long> row : builder.cells.values()) {
+      for (long count : row.values()) {
+        nonZeros += count != 0 ? 1 : 0;
+      }
+    }
+    cells = nonZeros;
+    rowOffsets = sparse ? new int[n + 1] : null;
+    columnIds = sparse ? new int[nonZeros] : null;
+    values = sparse ? new long[nonZeros] : null;
+
+    int k = 0;
+    for (int r = 0; r < n; ++r) { // rows in sorted order
+      Map<String, Long> row = builder.cells.getOrDefault(categories.get(r), ImmutableMap.of());
+      int start = k;
+      for (Entry<String, Long> column : row.entrySet()) {
+        int c = indices.get(column.getKey());
+        long count = column.getValue();
+        rowTotals[r] += count;
+        columnTotals[c] += count;
+        columnEntries[c]++;
+        if (!sparse) {
+          counts[r * n + c] = count;
+        } else if (count != 0) {
+          columnIds[k] = c;
+          values[k++] = count;
+        }
+      }
+      if (sparse) {
+        sortRow(start, k);
+        rowOffsets[r + 1] = k;
+      }
+    }
+  }
+
+  // sort one sparse row by column, via packed (column, position) keys
+  private void sortRow(final int start, final int end) {
+    int m = end - start;
+    long[] keys = new long[m];
+    for (int i = 0; i < m; ++i) {
+      keys[i] = (long) columnIds[start + i] << Integer.SIZE | i;
+    }
+    Arrays.sort(keys);
+    long[] row = Arrays.copyOfRange(values, start, end);
+    for (int i = 0; i < m; ++i) {
+      columnIds[start + i] = (int) (keys[i] >>> Integer.SIZE);
+      values[start + i] = row[(int) keys[i]];
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Intern a nested confusion map.
+   *
+   * @param matrix Map of gold category to map of system category to count.
+   * @return Confusion matrix.
+   */
+  public static ConfusionMatrix of(final Map<String, Map<String, Long>> matrix) {
+    Builder builder = builder();
+    for (Entry<String, Map<String, Long>> row : matrix.entrySet()) {
+      builder.row(row.getKey());
+      for (Entry<String, Long> column : row.getValue().entrySet()) {
+        builder.add(row.getKey(), column.getKey(), column.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  public int size() {
+    return categories.size();
+  }
+
+  public List<String> categories() {
+    return categories;
+  }
+
+  public String category(final int index) {
+    return categories.get(index);
+  }
+
+  /**
+   * Category id.
+   *
+   * @param category Category of interest.
+   * @return Index of category, or -1 if unknown.
+   */
+  public int index(final String category) {
+    Integer index = indices.get(category);
+    return index != null ? index : -1;
+  }
+
+  public boolean isSparse() {
+    return counts == null;
+  }
+
+  public long count(final int gold, final int system) {
+    if (counts != null) {
+      return counts[gold * size() + system];
+    }
+    int i = Arrays.binarySearch(columnIds, rowOffsets[gold], rowOffsets[gold + 1], system);
+    return i >= 0 ? values[i] : 0;
+  }
+
+  /**
+   * Visit non-zero cells of a row in column order.
+   *
+   * @param gold     Row of interest.
+   * @param consumer Visitor of cells.
+   */
+  public void forEachInRow(final int gold, final CellConsumer consumer) {
+    if (counts != null) {
+      int n = size();
+      for (int c = 0; c < n; ++c) {
+        long count = counts[gold * n + c];
+        if (count != 0) {
+          consumer.accept(gold, c, count);
+        }
+      }
+    } else {
+      for (int i = rowOffsets[gold]; i < rowOffsets[gold + 1]; ++i) {
+        consumer.accept(gold, columnIds[i], values[i]);
+      }
+    }
+  }
+
+  /**
+   * Visit non-zero cells in row major order.
+   *
+   * @param consumer Visitor of cells.
+   */
+  public void forEach(final CellConsumer consumer) {
+    for (int r = 0; r < size(); ++r) {
+      forEachInRow(r, consumer);
+    }
+  }
+
+  public boolean isGold(final int category) {
+    return gold[category];
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * @return Number of non-zero cells.
+   */
+  public int cells() {
+    return cells;
+  }
+
+  public long rowTotal(final int category) {
+    return rowTotals[category];
+  }
+
+  public long columnTotal(final int category) {
+    return columnTotals[category];
+  }
+
+  public int columnEntries(final int category) {
+    return columnEntries[category];
+  }
+
+  /**
+   * Nested map form, as accepted by {@link #of(Map)}.
+   *
+   * @return Map of gold category to map of system category to count.
+   */
+  public Map<String, Map<String, Long>> toMap() {
+    Map<String, Map<String, Long>> map = Maps.newLinkedHashMap();
+    for (int r = 0; r < size(); ++r) {
+      if (gold[r]) {
+        Map<String, Long> row = Maps.newLinkedHashMap();
+        forEachInRow(r, (g, c, count) -> row.put(categories.get(c), count));
+        map.put(categories.get(r), Collections.unmodifiableMap(row));
+      }
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  public static final class Builder {
+    private final Set<String> rows = Sets.newHashSet();
+    private final Set<String> columns = Sets.newHashSet();
+    private final Map<String, Map<String, Long>> cells = Maps.newHashMap();
+    private Boolean sparse = null; // decide by size
+
+    private Builder() {
+    }
+
+    /**
+     * Force sparse (or dense) storage, instead of deciding by number of categories.  Matrices too large for one array
+     * are sparse regardless.
+     *
+     * @param sparse True for compressed sparse rows, false for a dense array.
+     * @return This builder.
+     */
+    public Builder sparse(final boolean sparse) {
+      this.sparse = sparse;
+      return this;
+    }
+
+    /**
+     * Declare gold row, even if it has no entries.
+     *
+     * @param gold Gold category.
+     * @return This builder.
+     */
+    public Builder row(final String gold) {
+      rows.add(gold);
+      return this;
+    }
+
+    public Builder add(final String gold, final String system, final long count) {
+      rows.add(gold);
+      columns.add(system);
+      cells.computeIfAbsent(gold, g -> Maps.newHashMap()).merge(system, count, Long::sum);
+      return this;
+    }
+
+    public ConfusionMatrix build() {
+      return new ConfusionMatrix(this);
+    }
+  }
+}
@@ -1,21 +1,24 @@
 package com.nlp.score;
 
 import com.google.common.base.Joiner;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.util.Collection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * Takes in a confusion matrix and computes additional scores on the matrix.
@@ -24,92 +27,92 @@ import java.util.stream.IntStream;
  * @author Kevin Crosby.
  */
 public class Scores {
-  private final Map<String, Map<String, Long>> matrix;
-  private final Map<String, Metrics> metricsMap;
+  private static final int BUFFER_SIZE = 1 << 16;
 
-  public Scores(final Map<String, Map<String, Long>> matrix) {
-    this.matrix = matrix;
-    metricsMap = Maps.newConcurrentMap();
-  }
-
-  private class Metrics {
-    private final String category;
-    private final long tp, tn, fp, fn;
-
-    private Metrics(final String category) {
-      this.category = category;
-      long tp = 0, tn = 0, fn = 0, tfp = 0; // tp + fp
-      if (matrix.containsKey(category)) {
-        for (final Entry<String, Long> entry : matrix.get(category).entrySet()) {
-          if (category.equals(entry.getKey())) {
-            tp += entry.getValue();
-          } else {
-            fn += entry.getValue();
-          }
-        }
-        for (final Map<String, Long> values : matrix.values()) {
-          if (values.containsKey(category)) {
-            tfp += values.get(category);
-          } else {
-            tn++;
-          }
-        }
-      }
-      this.tp = tp;
-      this.tn = tn;
-      this.fp = tfp - tp;
-      this.fn = fn;
-    }
+  private final ConfusionMatrix confusion;
+  private final Supplier<Map<String, Map<String, Long>>> matrix;
 
-    private String category() {
-      return category;
-    }
+  // per category metrics, indexed by category id, computed once
+  private final long[] tp, tn, fp, fn;
+  private final double[] precision, recall, f, accuracy;
 
-    private long tp() { // hits
-      return tp;
-    }
+  // system totals over gold categories
+  private final long tpTotal, tnTotal, fpTotal, fnTotal;
+  private final double precisionMacro, recallMacro, accuracyMacro;
 
-    private long tn() { // correct rejection
-      return tn;
-    }
+  public Scores(final Map<String, Map<String, Long>> matrix) {
+    this(ConfusionMatrix.of(matrix), Suppliers.ofInstance(matrix));
+  }
 
-    private long fp() { // spurious (Type I error)
-      return fp;
-    }
+  public Scores(final ConfusionMatrix confusion) {
+    this(confusion, Suppliers.memoize(confusion::toMap));
+  }
 
-    private long fn() { // missing (Type II error)
-      return fn;
-    }
+  private Scores(final ConfusionMatrix confusion, final Supplier<Map<String, Map<String, Long>>> matrix) {
+    this.confusion = confusion;
+    this.matrix = matrix;
 
-    private double precision() {
-      long n = tp;
-      long d = tp + fp;
-      return d > 0 ? (double) n / d : 0d;
+    int n = confusion.size();
+    tp = new long[n];
+    tn = new long[n];
+    fp = new long[n];
+    fn = new long[n];
+    precision = new double[n];
+    recall = new double[n];
+    f = new double[n];
+    accuracy = new double[n];
+
+    long tpTotal = 0, tnTotal = 0, fpTotal = 0, fnTotal = 0;
+    double precisionSum = 0, recallSum = 0, accuracySum = 0;
+    for (int i = 0; i < n; ++i) {
+      if (confusion.isGold(i)) { // only gold categories have metrics
+        long diagonal = confusion.count(i, i);
+        tp[i] = diagonal;
+        fn[i] = confusion.rowTotal(i) - diagonal;
+        fp[i] = confusion.columnTotal(i) - diagonal;
+        tn[i] = confusion.rows() - confusion.columnEntries(i); // gold rows that never answered category
+        precision[i] = ratio(tp[i], tp[i] + fp[i]);
+        recall[i] = ratio(tp[i], tp[i] + fn[i]);
+        f[i] = harmonic(precision[i], recall[i]);
+        accuracy[i] = ratio(tp[i] + tn[i], tp[i] + tn[i] + fp[i] + fn[i]);
+
+        tpTotal += tp[i];
+        tnTotal += tn[i];
+        fpTotal += fp[i];
+        fnTotal += fn[i];
+        precisionSum += precision[i];
+        recallSum += recall[i];
+        accuracySum += accuracy[i];
+      }
     }
+    this.tpTotal = tpTotal;
+    this.tnTotal = tnTotal;
+    this.fpTotal = fpTotal;
+    this.fnTotal = fnTotal;
+    int rows = confusion.rows();
+    precisionMacro = precisionSum / rows;
+    recallMacro = recallSum / rows;
+    accuracyMacro = accuracySum / rows;
+  }
 
-    private double recall() {
-      long n = tp;
-      long d = tp + fn;
-      return d > 0 ? (double) n / d : 0d;
-    }
+  private static double ratio(final long n, final long d) {
+    return d > 0 ? (double) n / d : 0d;
+  }
 
-    private double f() {
-      double p = precision();
-      double r = recall();
-      double n = 2 * p * r;
-      double d = p + r;
-      return d > 0 ? n / d : 0d;
-    }
+  private static double harmonic(final double p, final double r) {
+    double n = 2 * p * r;
+    double d = p + r;
+    return d > 0 ? n / d : 0d;
+  }
 
-    private double accuracy() {
-      long n = tp + tn;
-      long d = n + fp + fn;
-      return d > 0 ? (double) n / d : 0d;
-    }
+  private long get(final long[] metrics, final String category) {
+    int i = confusion.index(category);
+    return i >= 0 ? metrics[i] : 0;
   }
 
-  private Metrics compute(final String category) {
-    return metricsMap.computeIfAbsent(category, Metrics::new);
+  private double get(final double[] metrics, final String category) {
+    int i = confusion.index(category);
+    return i >= 0 ? metrics[i] : 0d;
   }
 
   /**
@@ -119,7 +122,7 @@ public class Scores {
    * @return True positive count for category.
    */
   public long tp(final String category) {
-    return compute(category).tp();
+    return get(tp, category);
   }
 
   /**
@@ -128,7 +131,7 @@ public class Scores {
    * @return True positive count for system.
    */
   public long tp() {
-    return matrix.entrySet().stream().mapToLong(e -> tp(e.getKey())).sum();
+    return tpTotal;
   }
 
   /**
@@ -138,7 +141,7 @@ public class Scores {
    * @return True negative count for category.
    */
   public long tn(final String category) {
-    return compute(category).tn();
+    return get(tn, category);
   }
 
   /**
@@ -147,7 +150,7 @@ public class Scores {
    * @return True negative count for system.
    */
   public long tn() {
-    return matrix.keySet().stream().mapToLong(this::tn).sum();
+    return tnTotal;
   }
 
   /**
@@ -157,7 +160,7 @@ public class Scores {
    * @return False positive count for category.
    */
   public long fp(final String category) {
-    return compute(category).fp();
+    return get(fp, category);
   }
 
   /**
@@ -166,7 +169,7 @@ public class Scores {
    * @return False positive count for system.
    */
   public long fp() {
-    return matrix.keySet().stream().mapToLong(this::fp).sum();
+    return fpTotal;
   }
 
   /**
@@ -176,7 +179,7 @@ public class Scores {
    * @return False negative count for category.
    */
   public long fn(final String category) {
-    return compute(category).fn();
+    return get(fn, category);
   }
 
   /**
@@ -185,7 +188,7 @@ public class Scores {
    * @return False negative count for system.
    */
   public long fn() {
-    return matrix.keySet().stream().mapToLong(this::fn).sum();
+    return fnTotal;
   }
 
   /**
@@ -195,7 +198,7 @@ public class Scores {
    * @return Precision for category.
    */
   public double getPrecision(final String category) {
-    return compute(category).precision();
+    return get(precision, category);
   }
 
   /**
@@ -204,7 +207,7 @@ public class Scores {
    * @return macro averaged precision of the system.
    */
   public double getPrecision() { // macro
-    return matrix.keySet().stream().mapToDouble(this::getPrecision).sum() / matrix.size();
+    return precisionMacro;
   }
 
   /**
@@ -213,9 +216,7 @@ public class Scores {
    * @return micro averaged precision of the system.
    */
   public double getPrecisionMicro() { // micro
-    long n = tp();
-    long d = tp() + fp();
-    return d > 0 ? (double) n / d : 0d;
+    return ratio(tpTotal, tpTotal + fpTotal);
   }
 
   /**
@@ -225,7 +226,7 @@ public class Scores {
    * @return Recall for category.
    */
   public double getRecall(final String category) {
-    return compute(category).recall();
+    return get(recall, category);
   }
 
   /**
@@ -234,7 +235,7 @@ public class Scores {
    * @return macro averaged recall of the system.
    */
   public double getRecall() { // macro
-    return matrix.keySet().stream().mapToDouble(this::getRecall).sum() / matrix.size();
+    return recallMacro;
   }
 
   /**
@@ -243,9 +244,7 @@ public class Scores {
    * @return micro averaged recall of the system.
    */
   public double getRecallMicro() { // micro
-    long n = tp();
-    long d = tp() + fn();
-    return d > 0 ? (double) n / d : 0d;
+    return ratio(tpTotal, tpTotal + fnTotal);
   }
 
   /**
@@ -255,7 +254,7 @@ public class Scores {
    * @return F1 measure for category.
    */
   public double getF1Measure(final String category) {
-    return compute(category).f();
+    return get(f, category);
   }
 
   /**
@@ -264,11 +263,7 @@ public class Scores {
    * @return macro averaged F1 measure of the system.
    */
   public double getF1Measure() { // macro
-    double p = getPrecision();
-    double r = getRecall();
-    double n = 2 * p * r;
-    double d = p + r;
-    return d > 0 ? n / d : 0d;
+    return harmonic(precisionMacro, recallMacro);
   }
 
   /**
@@ -277,11 +272,7 @@ public class Scores {
    * @return micro averaged F1 measure of the system.
    */
   public double getF1MeasureMicro() { // micro
-    double p = getPrecisionMicro();
-    double r = getRecallMicro();
-    double n = 2 * p * r;
-    double d = p + r;
-    return d > 0 ? n / d : 0d;
+    return harmonic(getPrecisionMicro(), getRecallMicro());
   }
 
   /**
@@ -291,7 +282,7 @@ public class Scores {
    * @return Accuracy for category.
    */
   public double getAccuracy(final String category) {
-    return compute(category).accuracy();
+    return get(accuracy, category);
   }
 
   /**
@@ -300,7 +291,7 @@ public class Scores {
    * @return macro averaged accuracy of the system.
    */
   public double getAccuracy() { // macro
-    return matrix.keySet().stream().mapToDouble(this::getAccuracy).sum() / matrix.size();
+    return accuracyMacro;
   }
 
   /**
@@ -309,47 +300,33 @@ public class Scores {
    * @return micro averaged accuracy of the system.
    */
   public double getAccuracyMicro() { // micro
-    long n = tp() + tn();
-    long d = n + fp() + fn();
-    return d > 0 ? (double) n / d : 0d;
+    return ratio(tpTotal + tnTotal, tpTotal + tnTotal + fpTotal + fnTotal);
   }
 
   /**
    * Show the scores on the screen.
    */
   public void showScores() {
-    generateScores(System.out);
+    show(this::generateScores);
   }
 
   /**
    * Write the scores to a file.
    */
   public void writeScores(final File file) {
-    try {
-      if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
-        System.err.format("Cannot create directory for file \"%s\"\n", file);
-        System.exit(1);
-      }
-      OutputStream os = new FileOutputStream(file);
-      generateScores(os);
-      os.close();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    write(file, this::generateScores);
   }
 
-  private void generateScores(final OutputStream os) {
-    PrintWriter out = new PrintWriter(os, true);
+  private void generateScores(final PrintWriter out) {
     // show header
     String divider = new String(new char[90]).replace("\0", "-");
     out.println(divider);
     out.format("%30s,%6s,%6s,%6s,%6s,%6s,%6s,%6s\n", "CATEGORY", "C", "I", "S", "M", "P", "R", "F");
     out.format("%30s,%6s,%6s,%6s,%6s,%6s,%6s,%6s\n", "", "(tp)", "(tn)", "(fp)", "(fn)", "(prec)", "(rec)", "(f1)");
     out.println(divider);
-    for (String category : getCategories()) {
-      out.format("%30s,%6d,%6d,%6d,%6d,%.4f,%.4f,%.4f\n", category,
-          tp(category), tn(category), fp(category), fn(category),
-          getPrecision(category), getRecall(category), getF1Measure(category));
+    for (int i = 0; i < confusion.size(); ++i) {
+      out.format("%30s,%6d,%6d,%6d,%6d,%.4f,%.4f,%.4f\n", confusion.category(i),
+          tp[i], tn[i], fp[i], fn[i], precision[i], recall[i], f[i]);
     }
     out.println(divider);
     out.format("%30s,%6s,%6s,%6s,%6s,%.4f,%.4f,%.4f\n", "(MICRO)",
@@ -364,55 +341,36 @@ public class Scores {
    * Show the confusion matrix on the screen.
    */
   public void showMatrix() {
-    generateMatrix(System.out);
+    show(this::generateMatrix);
   }
 
   /**
    * Write the confusion matrix to a file.
    */
   public void writeMatrix(final File file) {
-    try {
-      if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
-        System.err.format("Cannot create directory for file \"%s\"", file);
-        System.exit(1);
-      }
-      OutputStream os = new FileOutputStream(file);
-      generateMatrix(os);
-      os.close();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    write(file, this::generateMatrix);
   }
 
-  private void generateMatrix(final OutputStream os) {
-    List<String> categories = getCategories();
+  // dense matrices as a grid, sparse matrices as one line per non-zero cell in row major order
+  private void generateMatrix(final PrintWriter out) {
+    List<String> categories = confusion.categories();
     int n = categories.size();
-    Map<String, Integer> indices = IntStream.range(0, n).boxed() // inverse mapping from category to index
-        .collect(Collectors.toMap(categories::get, i -> i));
-
-    // create 2D array and plug in values based on category, category pairs
-    long[][] grid = new long[n][n];
-    for (Entry<String, Map<String, Long>> row : matrix.entrySet()) {
-      String gold = row.getKey();
-      int r = indices.get(gold);
-      for (Entry<String, Long> column : row.getValue().entrySet()) {
-        String system = column.getKey();
-        int c = indices.get(system);
-        long count = column.getValue();
-        grid[r][c] = count;
-      }
+
+    if (confusion.isSparse()) {
+      out.format("%30s,%30s,%6s\n", "GOLD", "SYSTEM", "COUNT");
+      confusion.forEach((r, c, count) -> out.format("%30s,%30s,%6d\n", categories.get(r), categories.get(c), count));
+      return;
     }
 
-    // display to screen
-    PrintWriter out = new PrintWriter(os, true);
     out.print(',');
     out.println(Joiner.on(',').join(categories));
     for (int r = 0; r < n; ++r) {
       String gold = categories.get(r);
       out.format("%30s,", gold);
       for (int c = 0; c < n; ++c) {
-        if (grid[r][c] != 0) {
-          out.format("%6d,", grid[r][c]);
+        long count = confusion.count(r, c);
+        if (count != 0) {
+          out.format("%6d,", count);
         } else {
           out.format("%6s,", '.');
         }
@@ -421,23 +379,128 @@ public class Scores {
     }
   }
 
+  /**
+   * Off diagonal cell of the confusion matrix.
+   */
+  public static final class Confusion {
+    private final String gold;
+    private final String system;
+    private final long count;
+
+    private Confusion(final String gold, final String system, final long count) {
+      this.gold = gold;
+      this.system = system;
+      this.count = count;
+    }
+
+    public String gold() {
+      return gold;
+    }
+
+    public String system() {
+      return system;
+    }
+
+    public long count() {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s -> %s: %d", gold, system, count);
+    }
+  }
+
+  /**
+   * Get the most frequent confusions, by way of a bounded heap.
+   *
+   * @param limit Maximum number of confusions.
+   * @return Confusions in descending order of count, ties in order of gold, then system category.
+   */
+  public List<Confusion> getConfusions(final int limit) {
+    // ascending count, then descending (gold, system), so the reverse order is deterministic
+    Comparator<long[]> comparator = Comparator.<long[]>comparingLong(cell -> cell[2])
+        .thenComparing(Comparator.<long[]>comparingLong(cell -> cell[0]).thenComparingLong(cell -> cell[1]).reversed());
+    int capacity = Math.max(1, Math.min(limit, confusion.cells()));
+    Queue<long[]> heap = new PriorityQueue<>(capacity, comparator); // smallest of the top on top
+    confusion.forEach((r, c, count) -> {
+      if (r != c && limit > 0) {
+        long[] cell = {r, c, count};
+        if (heap.size() < limit) {
+          heap.add(cell);
+        } else if (comparator.compare(cell, heap.peek()) > 0) {
+          heap.remove();
+          heap.add(cell);
+        }
+      }
+    });
+    return heap.stream()
+        .sorted(comparator.reversed())
+        .map(cell -> new Confusion(confusion.category((int) cell[0]), confusion.category((int) cell[1]), cell[2]))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Show the most frequent confusions on the screen.
+   */
+  public void showConfusions(final int limit) {
+    show(out -> generateConfusions(out, limit));
+  }
+
+  /**
+   * Write the most frequent confusions to a file.
+   */
+  public void writeConfusions(final File file, final int limit) {
+    write(file, out -> generateConfusions(out, limit));
+  }
+
+  private void generateConfusions(final PrintWriter out, final int limit) {
+    out.format("%30s,%30s,%6s\n", "GOLD", "SYSTEM", "COUNT");
+    for (Confusion confusion : getConfusions(limit)) {
+      out.format("%30s,%30s,%6d\n", confusion.gold(), confusion.system(), confusion.count());
+    }
+  }
+
+  private static void show(final Consumer<PrintWriter> generator) {
+    PrintWriter out = new PrintWriter(System.out);
+    generator.accept(out);
+    out.flush();
+  }
+
+  // streams through a buffered channel writer, so output never has to fit in memory
+  private static void write(final File file, final Consumer<PrintWriter> generator) {
+    if (!file.getAbsoluteFile().getParentFile().exists() && !file.getAbsoluteFile().getParentFile().mkdirs()) {
+      System.err.format("Cannot create directory for file \"%s\"\n", file);
+      System.exit(1);
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      PrintWriter out = new PrintWriter(new BufferedWriter(
+          Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE));
+      generator.accept(out);
+      out.flush();
+      if (out.checkError()) {
+        throw new IOException(String.format("Cannot write file \"%s\"", file));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Get the categories represented in the system.
    *
    * @return List of unique categories in the system.
    */
   public List<String> getCategories() { // get list of unique categories
-    Set<String> rows = matrix.keySet(); // category rows (gold)
-    Set<String> columns = matrix.values().stream() // category columns (system)
-        .map(Map::keySet)
-        .flatMap(Collection::stream)
-        .collect(Collectors.toSet());
-    return Sets.union(rows, columns).stream() // all known categories
-        .sorted()
-        .collect(Collectors.toList());
+    return confusion.categories();
   }
 
   public Map<String, Map<String, Long>> getMatrix() {
-    return matrix;
+    return matrix.get();
+  }
+
+  public ConfusionMatrix getConfusionMatrix() {
+    return confusion;
   }
 }
@@ -0,0 +1,494 @@
+package com.nlp.score;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.exp;
+import static java.lang.Math.floor;
+import static java.lang.Math.log;
+import static java.lang.Math.sqrt;
+
+/**
+ * Paired bootstrap confidence intervals and approximate randomization tests for comparing two systems against the
+ * same gold answers, for micro and macro averaged precision, recall and F1 measure, as in {@link Scores}: only
+ * categories with gold answers in a (re)sample are scored, and macro averages are over those categories, with macro F1
+ * being the harmonic mean of macro precision and recall.
+ *
+ * Examples are compressed to distinct (gold, first, second) patterns with counts, and every resample or shuffle only
+ * draws new counts per pattern: Poisson counts for the bootstrap, binomial swap counts for randomization.  Work is
+ * split over fork/join with {@link SplittableRandom}, so results depend only on the seed, not on the parallelism.
+ *
+ * @author Kevin Crosby.
+ */
+public final class Significance {
+  private static final int SEQUENTIAL_THRESHOLD = 16; // resamples per fork/join leaf
+  private static final double EPSILON = 1e-12;
+  private static final int MAX_CATEGORIES = 1 << 21; // so that (gold, first, second) packs into a long
+
+  public enum Metric {
+    PRECISION_MICRO, RECALL_MICRO, F1_MICRO, PRECISION_MACRO, RECALL_MACRO, F1_MACRO
+  }
+
+  private static final Metric[] METRICS = Metric.values();
+
+  private static final int SMALL_LAMBDA = 10;
+  private static final double[][] POISSON_CDF = new double[SMALL_LAMBDA][]; // cumulative probabilities per count
+
+  static {
+    for (int lambda = 0; lambda < SMALL_LAMBDA; ++lambda) {
+      int n = 4 * SMALL_LAMBDA; // P(k >= 40) < 1e-16 for lambda < 10
+      POISSON_CDF[lambda] = new double[n];
+      double p = exp(-lambda);
+      double sum = 0;
+      for (int k = 0; k < n; ++k) {
+        sum += p;
+        POISSON_CDF[lambda][k] = sum;
+        p *= (double) lambda / (k + 1);
+      }
+    }
+  }
+
+  private final int categories;
+  private final int[] golds; // per pattern
+  private final int[] firsts;
+  private final int[] seconds;
+  private final long[] counts;
+
+  /**
+   * Compare two systems.
+   *
+   * @param gold   Correct answer per example.
+   * @param first  Answer of first (baseline) system per example.
+   * @param second Answer of second system per example.
+   * @return Significance tests of second system against first.
+   */
+  public static Significance of(final List<String> gold, final List<String> first, final List<String> second) {
+    Map<String, Integer> ids = Maps.newHashMap();
+    return new Significance(intern(gold, ids), intern(first, ids), intern(second, ids), ids.size());
+  }
+
+  private static int[] intern(final List<String> answers, final Map<String, Integer> ids) {
+    return answers.stream()
+        .mapToInt(a -> ids.computeIfAbsent(a, x -> ids.size()))
+        .toArray();
+  }
+
+  /**
+   * Compare two systems by category ids.
+   *
+   * @param gold       Correct answer per example.
+   * @param first      Answer of first (baseline) system per example.
+   * @param second     Answer of second system per example.
+   * @param categories Number of categories, i.e. one more than largest id.
+   */
+  public Significance(final int[] gold, final int[] first, final int[] second, final int categories) {
+    if (gold.length != first.length || gold.length != second.length) {
+      throw new IllegalArgumentException("Answers must be the same size!");
+    }
+    if (categories > MAX_CATEGORIES) {
+      throw new IllegalArgumentException(String.format("At most %d categories are supported!", MAX_CATEGORIES));
+    }
+    this.categories = categories;
+    int n = gold.length;
+    long k = categories;
+    long[] keys = new long[n];
+    for (int i = 0; i < n; ++i) {
+      keys[i] = (gold[i] * k + first[i]) * k + second[i];
+    }
+    Arrays.sort(keys);
+    int m = 0;
+    for (int i = 0; i < n; ++i) {
+      m += i == 0 || keys[i] != keys[i - 1] ? 1 : 0;
+    }
+    golds = new int[m];
+    firsts = new int[m];
+    seconds = new int[m];
+    counts = new long[m];
+    int p = -1;
+    for (int i = 0; i < n; ++i) {
+      if (i == 0 || keys[i] != keys[i - 1]) {
+        ++p;
+        golds[p] = (int) (keys[i] / k / k);
+        firsts[p] = (int) (keys[i] / k % k);
+        seconds[p] = (int) (keys[i] % k);
+      }
+      counts[p]++;
+    }
+  }
+
+  /**
+   * Point estimate with confidence interval.
+   */
+  public static final class Interval {
+    private final double estimate;
+    private final double lower;
+    private final double upper;
+
+    private Interval(final double estimate, final double lower, final double upper) {
+      this.estimate = estimate;
+      this.lower = lower;
+      this.upper = upper;
+    }
+
+    public double estimate() {
+      return estimate;
+    }
+
+    public double lower() {
+      return lower;
+    }
+
+    public double upper() {
+      return upper;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%.4f [%.4f, %.4f]", estimate, lower, upper);
+    }
+  }
+
+  /**
+   * Result of paired bootstrap resampling.
+   */
+  public static final class Bootstrap {
+    private final Map<Metric, Interval> first = new EnumMap<>(Metric.class);
+    private final Map<Metric, Interval> second = new EnumMap<>(Metric.class);
+    private final Map<Metric, Interval> difference = new EnumMap<>(Metric.class);
+    private final Map<Metric, Double> pValues = new EnumMap<>(Metric.class);
+
+    private Bootstrap() {
+    }
+
+    public Interval first(final Metric metric) {
+      return first.get(metric);
+    }
+
+    public Interval second(final Metric metric) {
+      return second.get(metric);
+    }
+
+    // second minus first
+    public Interval difference(final Metric metric) {
+      return difference.get(metric);
+    }
+
+    // fraction of resamples in which second is not better than first
+    public double pValue(final Metric metric) {
+      return pValues.get(metric);
+    }
+  }
+
+  // per category counts of one resample, reused within a fork/join leaf
+  private final class Counts {
+    private final long[] gold = new long[categories];
+    private final long[] tp1 = new long[categories];
+    private final long[] predicted1 = new long[categories];
+    private final long[] tp2 = new long[categories];
+    private final long[] predicted2 = new long[categories];
+    private final double[] metrics1 = new double[METRICS.length];
+    private final double[] metrics2 = new double[METRICS.length];
+
+    private void clear() {
+      Arrays.fill(gold, 0);
+      Arrays.fill(tp1, 0);
+      Arrays.fill(predicted1, 0);
+      Arrays.fill(tp2, 0);
+      Arrays.fill(predicted2, 0);
+    }
+
+    private void add(final int g, final int s1, final int s2, final long weight) {
+      gold[g] += weight;
+      predicted1[s1] += weight;
+      predicted2[s2] += weight;
+      if (s1 == g) {
+        tp1[g] += weight;
+      }
+      if (s2 == g) {
+        tp2[g] += weight;
+      }
+    }
+
+    private void compute() {
+      metrics(gold, tp1, predicted1, metrics1);
+      metrics(gold, tp2, predicted2, metrics2);
+    }
+
+    // over the gold rows of the confusion matrix, i.e. categories with gold answers, as in Scores
+    private void metrics(final long[] gold, final long[] tp, final long[] predicted, final double[] metrics) {
+      long tpSum = 0, goldSum = 0, predictedSum = 0;
+      double precisionSum = 0, recallSum = 0;
+      int rows = 0;
+      for (int k = 0; k < categories; ++k) {
+        if (gold[k] == 0) {
+          continue;
+        }
+        ++rows;
+        tpSum += tp[k];
+        goldSum += gold[k];
+        predictedSum += predicted[k];
+        precisionSum += ratio(tp[k], predicted[k]);
+        recallSum += ratio(tp[k], gold[k]);
+      }
+      double precision = ratio(tpSum, predictedSum);
+      double recall = ratio(tpSum, goldSum);
+      metrics[Metric.PRECISION_MICRO.ordinal()] = precision;
+      metrics[Metric.RECALL_MICRO.ordinal()] = recall;
+      metrics[Metric.F1_MICRO.ordinal()] = harmonic(precision, recall);
+      precision = rows > 0 ? precisionSum / rows : 0d;
+      recall = rows > 0 ? recallSum / rows : 0d;
+      metrics[Metric.PRECISION_MACRO.ordinal()] = precision;
+      metrics[Metric.RECALL_MACRO.ordinal()] = recall;
+      metrics[Metric.F1_MACRO.ordinal()] = harmonic(precision, recall);
+    }
+  }
+
+  private static double ratio(final long n, final long d) {
+    return d > 0 ? (double) n / d : 0d;
+  }
+
+  private static double harmonic(final double p, final double r) {
+    double n = 2 * p * r;
+    double d = p + r;
+    return d > 0 ? n / d : 0d;
+  }
+
+  private Counts observed() {
+    Counts counts = new Counts();
+    for (int p = 0; p < golds.length; ++p) {
+      counts.add(golds[p], firsts[p], seconds[p], this.counts[p]);
+    }
+    counts.compute();
+    return counts;
+  }
+
+  /**
+   * Paired bootstrap, with percentile confidence intervals.
+   *
+   * @param resamples  Number of resamples, e.g. 10,000.
+   * @param confidence Confidence level, e.g. 0.95.
+   * @param seed       Seed of random number generator.
+   * @return Confidence intervals for both systems and their difference, and bootstrap p-values.
+   */
+  public Bootstrap bootstrap(final int resamples, final double confidence, final long seed) {
+    if (resamples <= 0) {
+      throw new IllegalArgumentException("Number of resamples must be positive!");
+    }
+    double[][] samples1 = new double[METRICS.length][resamples];
+    double[][] samples2 = new double[METRICS.length][resamples];
+    double[][] differences = new double[METRICS.length][resamples];
+    ForkJoinPool.commonPool().invoke(new Resampler(0, resamples, new SplittableRandom(seed), samples1, samples2, differences));
+
+    Counts observed = observed();
+    Bootstrap bootstrap = new Bootstrap();
+    for (Metric metric : METRICS) {
+      int m = metric.ordinal();
+      double estimate1 = observed.metrics1[m];
+      double estimate2 = observed.metrics2[m];
+      bootstrap.first.put(metric, interval(estimate1, samples1[m], confidence));
+      bootstrap.second.put(metric, interval(estimate2, samples2[m], confidence));
+      bootstrap.difference.put(metric, interval(estimate2 - estimate1, differences[m], confidence));
+      long notBetter = Arrays.stream(differences[m]).filter(d -> d <= 0).count();
+      bootstrap.pValues.put(metric, (double) notBetter / resamples);
+    }
+    return bootstrap;
+  }
+
+  private static Interval interval(final double estimate, final double[] samples, final double confidence) {
+    double[] sorted = samples.clone();
+    Arrays.sort(sorted);
+    int n = sorted.length;
+    double alpha = (1 - confidence) / 2;
+    int lower = (int) Math.max(0, floor(alpha * n));
+    int upper = (int) Math.min(n - 1, Math.ceil((1 - alpha) * n) - 1);
+    return new Interval(estimate, sorted[lower], sorted[upper]);
+  }
+
+  private final class Resampler extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final SplittableRandom random;
+    private final double[][] samples1;
+    private final double[][] samples2;
+    private final double[][] differences;
+
+    private Resampler(final int from, final int to, final SplittableRandom random,
+                      final double[][] samples1, final double[][] samples2, final double[][] differences) {
+      this.from = from;
+      this.to = to;
+      this.random = random;
+      this.samples1 = samples1;
+      this.samples2 = samples2;
+      this.differences = differences;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= SEQUENTIAL_THRESHOLD) {
+        Counts resample = new Counts();
+        for (int r = from; r < to; ++r) {
+          resample.clear();
+          for (int p = 0; p < golds.length; ++p) {
+            long weight = poisson(random, counts[p]); // Poisson bootstrap of pattern counts
+            if (weight > 0) {
+              resample.add(golds[p], firsts[p], seconds[p], weight);
+            }
+          }
+          resample.compute();
+          for (int m = 0; m < METRICS.length; ++m) {
+            samples1[m][r] = resample.metrics1[m];
+            samples2[m][r] = resample.metrics2[m];
+            differences[m][r] = resample.metrics2[m] - resample.metrics1[m];
+          }
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        SplittableRandom split = random.split(); // split before forking, so streams are deterministic
+        invokeAll(new Resampler(from, middle, split, samples1, samples2, differences),
+            new Resampler(middle, to, random, samples1, samples2, differences));
+      }
+    }
+  }
+
+  /**
+   * Approximate randomization test, swapping the answers of the two systems for each example with probability 1/2.
+   *
+   * @param trials Number of shuffles, e.g. 10,000.
+   * @param seed   Seed of random number generator.
+   * @return Two sided p-value per metric.
+   */
+  public Map<Metric, Double> randomization(final int trials, final long seed) {
+    if (trials <= 0) {
+      throw new IllegalArgumentException("Number of trials must be positive!");
+    }
+    Counts observed = observed();
+    double[] delta = new double[METRICS.length];
+    for (int m = 0; m < METRICS.length; ++m) {
+      delta[m] = abs(observed.metrics2[m] - observed.metrics1[m]);
+    }
+    long[][] extremes = new long[METRICS.length][trials];
+    ForkJoinPool.commonPool().invoke(new Shuffler(0, trials, new SplittableRandom(seed), delta, extremes));
+
+    Map<Metric, Double> pValues = new EnumMap<>(Metric.class);
+    for (Metric metric : METRICS) {
+      long at = Arrays.stream(extremes[metric.ordinal()]).sum();
+      pValues.put(metric, (at + 1.0) / (trials + 1.0));
+    }
+    return pValues;
+  }
+
+  private final class Shuffler extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final SplittableRandom random;
+    private final double[] delta;
+    private final long[][] extremes;
+
+    private Shuffler(final int from, final int to, final SplittableRandom random, final double[] delta, final long[][] extremes) {
+      this.from = from;
+      this.to = to;
+      this.random = random;
+      this.delta = delta;
+      this.extremes = extremes;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= SEQUENTIAL_THRESHOLD) {
+        Counts shuffle = new Counts();
+        for (int t = from; t < to; ++t) {
+          shuffle.clear();
+          for (int p = 0; p < golds.length; ++p) {
+            long swapped = binomialHalf(random, counts[p]);
+            shuffle.add(golds[p], firsts[p], seconds[p], counts[p] - swapped);
+            if (swapped > 0) {
+              shuffle.add(golds[p], seconds[p], firsts[p], swapped);
+            }
+          }
+          shuffle.compute();
+          for (int m = 0; m < METRICS.length; ++m) {
+            extremes[m][t] = abs(shuffle.metrics2[m] - shuffle.metrics1[m]) >= delta[m] - EPSILON ? 1 : 0;
+          }
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        SplittableRandom split = random.split();
+        invokeAll(new Shuffler(from, middle, split, delta, extremes), new Shuffler(middle, to, random, delta, extremes));
+      }
+    }
+  }
+
+  // Binomial(n, 1/2) by counting the set bits of n random bits
+  private static long binomialHalf(final SplittableRandom random, final long n) {
+    long successes = 0;
+    long remaining = n;
+    while (remaining >= Long.SIZE) {
+      successes += Long.bitCount(random.nextLong());
+      remaining -= Long.SIZE;
+    }
+    if (remaining > 0) {
+      successes += Long.bitCount(random.nextLong() & ((1L << remaining) - 1));
+    }
+    return successes;
+  }
+
+  // Poisson(lambda) by inversion for small lambda, else by transformed rejection (Hörmann's PTRS)
+  private static long poisson(final SplittableRandom random, final long lambda) {
+    if (lambda < SMALL_LAMBDA) {
+      double[] cdf = POISSON_CDF[(int) lambda];
+      double u = random.nextDouble();
+      int k = 0;
+      while (k < cdf.length - 1 && u > cdf[k]) {
+        ++k;
+      }
+      return k;
+    }
+    double logLambda = log(lambda);
+    double b = 0.931 + 2.53 * sqrt(lambda);
+    double a = -0.059 + 0.02483 * b;
+    double inverseAlpha = 1.1239 + 1.1328 / (b - 3.4);
+    double vr = 0.9277 - 3.6224 / (b - 2);
+    while (true) {
+      double u = random.nextDouble() - 0.5;
+      double v = random.nextDouble();
+      double us = 0.5 - abs(u);
+      long k = (long) floor((2 * a / us + b) * u + lambda + 0.43);
+      if (us >= 0.07 && v <= vr) {
+        return k;
+      }
+      if (k < 0 || (us < 0.013 && v > us)) {
+        continue;
+      }
+      if (log(v) + log(inverseAlpha) - log(a / (us * us) + b) <= -lambda + k * logLambda - logFactorial(k)) {
+        return k;
+      }
+    }
+  }
+
+  private static double logFactorial(final long k) {
+    if (k < 2) {
+      return 0;
+    }
+    if (k < 16) {
+      double sum = 0;
+      for (int i = 2; i <= k; ++i) {
+        sum += log(i);
+      }
+      return sum;
+    }
+    double n = k; // Stirling series
+    return n * log(n) - n + 0.5 * log(2 * Math.PI * n) + 1 / (12 * n) - 1 / (360 * n * n * n);
+  }
+}
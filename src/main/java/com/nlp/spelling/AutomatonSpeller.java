@@ -0,0 +1,233 @@
+package com.nlp.spelling;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimaps;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.nlp.spelling.SpellingEvaluation.Mode;
+import com.nlp.spelling.SpellingEvaluation.Pair;
+import com.nlp.spelling.SpellingEvaluation.Report;
+import com.nlp.text.Tokens;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static java.lang.Math.log;
+
+/**
+ * Spell corrector without a delete index: a Levenshtein automaton of the input is intersected with a DAWG of the
+ * vocabulary, and word counts are kept in an array indexed by the DAWG's perfect hash.
+ *
+ * Memory is a small fraction of {@link SmartSpeller}'s and startup is a single pass over the dictionary, at the cost
+ * of slower lookups; the maximum edit distance may also be chosen per instance.
+ *
+ * @author Kevin Crosby.
+ */
+public class AutomatonSpeller extends SpellCorrect {
+  private static final Pattern PASS_THROUGH = Pattern.compile("[$\\d]");
+
+  private static final int DEFAULT_EDIT_DISTANCE = 2;
+  private static final int DEFAULT_SENTENCE_COUNT = 12;
+
+  private static AutomatonSpeller instance = null;
+
+  private final int editDistanceMax;
+  private final int sentenceCount;
+  private final Dawg vocabulary;
+  private final long[] counts; // by vocabulary index
+  private final int maxlength;
+  private final double logTotal; // log of smoothed corpus size, shared by all word probabilities
+
+  private AutomatonSpeller() {
+    this(DictionarySource.resource(FREQUENCY_DICTIONARY), DEFAULT_EDIT_DISTANCE);
+  }
+
+  /**
+   * @param source          Source of words and their counts.
+   * @param editDistanceMax Maximum edit distance of candidates.
+   */
+  public AutomatonSpeller(final DictionarySource source, final int editDistanceMax) {
+    super();
+    this.editDistanceMax = editDistanceMax;
+    sentenceCount = DEFAULT_SENTENCE_COUNT;
+    AtomicLongMap<String> words = load(source); // only while building
+    vocabulary = Dawg.of(words.asMap().keySet());
+    counts = new long[vocabulary.size()];
+    words.asMap().forEach((word, count) -> counts[vocabulary.index(word)] = count);
+    maxlength = words.asMap().keySet().stream().mapToInt(String::length).max().orElse(0);
+    logTotal = log(words.sum() + vocabulary.size());
+  }
+
+  private AutomatonSpeller(final AutomatonSpeller that, final int editDistanceMax) {
+    super();
+    this.editDistanceMax = editDistanceMax;
+    sentenceCount = that.sentenceCount;
+    vocabulary = that.vocabulary;
+    counts = that.counts;
+    maxlength = that.maxlength;
+    logTotal = that.logTotal;
+  }
+
+  public static AutomatonSpeller getInstance() {
+    if (instance == null) {
+      synchronized (AutomatonSpeller.class) {
+        if (instance == null) {
+          instance = new AutomatonSpeller();
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Same vocabulary, different maximum edit distance.
+   *
+   * @param editDistanceMax Maximum edit distance of candidates.
+   * @return Spell corrector sharing this one's vocabulary.
+   */
+  public AutomatonSpeller withEditDistance(final int editDistanceMax) {
+    return new AutomatonSpeller(this, editDistanceMax);
+  }
+
+  public int getEditDistanceMax() {
+    return editDistanceMax;
+  }
+
+  /**
+   * Approximate memory footprint of vocabulary and counts.
+   *
+   * @return Bytes.
+   */
+  public long bytes() {
+    return vocabulary.bytes() + (long) Long.BYTES * counts.length;
+  }
+
+  private long count(final String word) {
+    int index = vocabulary.index(word);
+    return index >= 0 ? counts[index] : 0;
+  }
+
+  @Override
+  protected double logProbability(String word) {
+    return log(count(word) + 1) - logTotal;
+  }
+
+  @Override
+  protected double sentenceLogProbability(String sentence) {
+    Tokens tokens = Tokens.of(sentence);
+    double logProbability = 0;
+    for (int i = 0; i < tokens.size(); ++i) {
+      String word = tokens.text(i);
+      if (!PASS_THROUGH.matcher(word).find()) {
+        logProbability += logProbability(word);
+      }
+    }
+    return logProbability;
+  }
+
+  @Override
+  public String correct(String word) {
+    return candidates(word).stream()
+        .findFirst()
+        .orElse(word);
+  }
+
+  @Override
+  public Set<String> candidates(String input) {
+    if (PASS_THROUGH.matcher(input).find()) {
+      return ImmutableSet.of(input);
+    }
+    return lookup(input).keySet();
+  }
+
+  @SuppressWarnings("ConstantConditions")
+  @Override
+  protected Collection<String> expand(Tokens tokens) {
+    List<List<String>> candidates = Lists.newArrayList();
+    for (int i = 0; i < tokens.size(); ++i) {
+      String token = tokens.text(i);
+      LinkedListMultimap<Integer, String> multimap = Multimaps.invertFrom(Multimaps.forMap(lookup(token)), LinkedListMultimap.create());
+      for (int d = 0; d <= editDistanceMax; ++d) {
+        if (multimap.containsKey(d)) {
+          candidates.add(multimap.get(d));
+          break;
+        }
+      }
+    }
+    return expand(candidates, this::count, sentenceCount);
+  }
+
+  // dictionary words within the maximum edit distance, by ascending edit distance, then by descending word frequency
+  private Map<String, Integer> lookup(String input) {
+    //save some time
+    if (input.length() - editDistanceMax > maxlength) {
+      return ImmutableMap.of();
+    }
+    if (input.length() > LevenshteinAutomaton.MAX_LENGTH) {
+      return ImmutableMap.of(input, 0);
+    }
+    Map<String, Integer> suggestions = vocabulary.within(input, editDistanceMax);
+
+    // return original word if no other corrections offered ...
+    if (suggestions.isEmpty()) {
+      return ImmutableMap.of(input, 0);
+    }
+
+    return suggestions.entrySet().stream()
+        .sorted(Entry.<String, Integer>comparingByValue()
+            .thenComparing(x -> count(x.getKey()), Comparator.reverseOrder()))
+        .collect(ImmutableMap.toImmutableMap(Entry::getKey, Entry::getValue));
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; ++i) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void report(String name, long startup, long memory, Report report) {
+    System.out.format("%-22s %10d %10.1f %8.4f %8.4f %10.3f %10.3f\n", name, startup, memory / 1e6,
+        report.getTop1Accuracy(), report.getTopKAccuracy(),
+        report.getMeanLatency(TimeUnit.NANOSECONDS) / 1e6, report.getP99Latency(TimeUnit.NANOSECONDS) / 1e6);
+  }
+
+  /**
+   * Benchmark against {@link SmartSpeller} on the bundled misspellings, at edit distances 1 to 3.
+   */
+  public static void main(String[] args) {
+    List<Pair> pairs = SpellingEvaluation.fixture();
+    int k = 5;
+    System.out.format("%-22s %10s %10s %8s %8s %10s %10s\n", "ENGINE", "START(ms)", "MEM(MB)", "TOP1", "TOP" + k, "MEAN(ms)", "P99(ms)");
+
+    long before = usedMemory();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    AutomatonSpeller automaton = AutomatonSpeller.getInstance();
+    stopwatch.stop();
+    long memory = usedMemory() - before;
+    for (int d = 1; d <= 3; ++d) {
+      AutomatonSpeller speller = automaton.withEditDistance(d);
+      report("AutomatonSpeller d=" + d, stopwatch.elapsed(TimeUnit.MILLISECONDS), memory,
+          new SpellingEvaluation(speller, Mode.WORD, k, 1).evaluate(pairs));
+    }
+
+    before = usedMemory();
+    stopwatch.reset();
+    stopwatch.start();
+    SmartSpeller smart = SmartSpeller.getInstance();
+    stopwatch.stop();
+    memory = usedMemory() - before;
+    report("SmartSpeller d=" + SpellingIndex.EDIT_DISTANCE_MAX, stopwatch.elapsed(TimeUnit.MILLISECONDS), memory,
+        new SpellingEvaluation(smart, Mode.WORD, k, 1).evaluate(pairs));
+  }
+}
@@ -0,0 +1,251 @@
+package com.nlp.spelling;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.AtomicLongMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact, memory mapped frequency dictionary.
+ *
+ * Layout (big endian): magic, version, number of words n, blob length, n counts (long), n + 1 word offsets (int) and
+ * the blob of UTF-8 words, sorted by unsigned bytes.  Loading maps the file and reads nothing else up front; words are
+ * decoded on demand, and a word is found by binary search on its bytes.
+ *
+ * @author Kevin Crosby.
+ */
+public final class BinaryDictionary implements DictionarySource {
+  static final int MAGIC = 0x00444943; // "\0DIC", which cannot start a text dictionary
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+  private final int size;
+  private final LongBuffer counts;
+  private final IntBuffer offsets;
+  private final ByteBuffer blob;
+
+  private BinaryDictionary(final ByteBuffer buffer) {
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IllegalArgumentException("Not a binary dictionary (version " + VERSION + ")");
+    }
+    size = buffer.getInt(2 * Integer.BYTES);
+    int blobLength = buffer.getInt(3 * Integer.BYTES);
+    long length = size < 0 || blobLength < 0 ? -1
+        : HEADER_SIZE + (long) size * Long.BYTES + ((long) size + 1) * Integer.BYTES + blobLength;
+    if (length != buffer.capacity()) {
+      throw new IllegalArgumentException("Corrupt binary dictionary: header of " + size + " words and " + blobLength
+          + " bytes of words does not match file of " + buffer.capacity() + " bytes");
+    }
+    int position = HEADER_SIZE;
+    counts = slice(buffer, position, size * Long.BYTES).asLongBuffer();
+    position += size * Long.BYTES;
+    offsets = slice(buffer, position, (size + 1) * Integer.BYTES).asIntBuffer();
+    position += (size + 1) * Integer.BYTES;
+    blob = slice(buffer, position, blobLength);
+    if (offsets.get(0) != 0 || offsets.get(size) != blobLength) {
+      throw new IllegalArgumentException("Corrupt binary dictionary: word offsets do not span " + blobLength + " bytes");
+    }
+  }
+
+  private static ByteBuffer slice(final ByteBuffer buffer, final int position, final int length) {
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(position);
+    duplicate.limit(position + length);
+    return duplicate.slice();
+  }
+
+  /**
+   * Map a binary dictionary file.
+   *
+   * @param path Binary dictionary file.
+   * @return Binary dictionary.
+   */
+  public static BinaryDictionary load(final Path path) {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new BinaryDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())); // mapping outlives channel
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Write a binary dictionary file.
+   *
+   * @param words Map of word to count.
+   * @param path  Binary dictionary file.
+   */
+  public static void write(final Map<String, Long> words, final Path path) {
+    int n = words.size();
+    byte[][] encoded = new byte[n][];
+    long[] values = new long[n];
+    Integer[] order = new Integer[n];
+    int blobLength = 0;
+    int i = 0;
+    for (Entry<String, Long> entry : words.entrySet()) {
+      encoded[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+      values[i] = entry.getValue();
+      blobLength += encoded[i].length;
+      order[i] = i++;
+    }
+    Arrays.sort(order, (a, b) -> compare(encoded[a], encoded[b]));
+
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + n * Long.BYTES + (n + 1) * Integer.BYTES + blobLength);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(blobLength);
+    for (int j : order) {
+      buffer.putLong(values[j]);
+    }
+    int offset = 0;
+    buffer.putInt(offset);
+    for (int j : order) {
+      offset += encoded[j].length;
+      buffer.putInt(offset);
+    }
+    for (int j : order) {
+      buffer.put(encoded[j]);
+    }
+    buffer.flip();
+
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      parent.toFile().mkdirs();
+    }
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // unsigned lexicographic order of UTF-8 bytes
+  private static int compare(final byte[] a, final byte[] b) {
+    int n = Math.min(a.length, b.length);
+    for (int i = 0; i < n; ++i) {
+      int c = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return Integer.compare(a.length, b.length);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String word(final int index) {
+    int start = offsets.get(index);
+    byte[] bytes = new byte[offsets.get(index + 1) - start];
+    ByteBuffer word = blob.duplicate();
+    word.position(start);
+    word.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  public long count(final int index) {
+    return counts.get(index);
+  }
+
+  /**
+   * Index of word, by binary search.
+   *
+   * @param word Word of interest.
+   * @return Index of word, or -1 if absent.
+   */
+  public int index(final String word) {
+    byte[] key = word.getBytes(StandardCharsets.UTF_8);
+    int lo = 0;
+    int hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = compare(mid, key);
+      if (c < 0) {
+        lo = mid + 1;
+      } else if (c > 0) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  // compare word at index to key, as unsigned bytes
+  private int compare(final int index, final byte[] key) {
+    int start = offsets.get(index);
+    int length = offsets.get(index + 1) - start;
+    int n = Math.min(length, key.length);
+    for (int i = 0; i < n; ++i) {
+      int c = Integer.compare(blob.get(start + i) & 0xff, key[i] & 0xff);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return Integer.compare(length, key.length);
+  }
+
+  /**
+   * Count of word.
+   *
+   * @param word Word of interest.
+   * @return Count of word, or 0 if absent.
+   */
+  public long count(final String word) {
+    int index = index(word);
+    return index >= 0 ? count(index) : 0;
+  }
+
+  @Override
+  public void read(final EntryConsumer consumer) {
+    byte[] bytes = new byte[0];
+    ByteBuffer words = blob.duplicate();
+    int start = offsets.get(0);
+    for (int i = 0; i < size; ++i) {
+      int end = offsets.get(i + 1);
+      int length = end - start;
+      if (bytes.length < length) {
+        bytes = new byte[Math.max(length, 2 * bytes.length)];
+      }
+      words.position(start);
+      words.get(bytes, 0, length); // bulk copy
+      consumer.accept(new String(bytes, 0, length, StandardCharsets.UTF_8), counts.get(i));
+      start = end;
+    }
+  }
+
+  /**
+   * Convert a text (or binary) dictionary to a binary dictionary.
+   */
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.err.println("Usage: BinaryDictionary <input> <output>");
+      System.exit(1);
+    }
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    AtomicLongMap<String> words = AtomicLongMap.create();
+    DictionarySource.file(Paths.get(args[0])).read(words::addAndGet);
+    write(words.asMap(), Paths.get(args[1]));
+    stopwatch.stop();
+    System.out.printf("Converted %d words: %d milliseconds\n", words.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+    stopwatch.reset();
+    stopwatch.start();
+    AtomicLongMap<String> loaded = SpellCorrect.load(load(Paths.get(args[1])));
+    stopwatch.stop();
+    System.out.printf("Loading %d words: %d milliseconds\n", loaded.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+  }
+}
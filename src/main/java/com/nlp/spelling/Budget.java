@@ -0,0 +1,126 @@
+package com.nlp.spelling;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative limit on the work of one correction call: a deadline, a number of operations (index probes, edit
+ * distances, sentence expansions), or both.  Work loops spend from the budget as they go and, once it is exhausted,
+ * stop and return their best result so far, marked as truncated.
+ *
+ * The clock is read every few operations only, so a deadline may be overrun by a few operations.  Not thread safe:
+ * one budget per call.
+ *
+ * @author Kevin Crosby.
+ */
+public final class Budget {
+  private static final int CLOCK_INTERVAL = 16; // operations between clock reads, a power of 2
+
+  private final boolean timed;
+  private final long deadline; // in System.nanoTime() terms
+  private final long operations;
+  private long spent = 0;
+  private boolean truncated = false;
+
+  private Budget(final boolean timed, final long deadline, final long operations) {
+    this.timed = timed;
+    this.deadline = deadline;
+    this.operations = operations;
+  }
+
+  /**
+   * @return Budget that is never exhausted.
+   */
+  public static Budget unlimited() {
+    return new Budget(false, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param timeout Time allowed from now.
+   * @param unit    Unit of timeout.
+   * @return Budget exhausted at the deadline.
+   */
+  public static Budget within(final long timeout, final TimeUnit unit) {
+    return within(timeout, unit, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param timeout    Time allowed from now.
+   * @param unit       Unit of timeout.
+   * @param operations Operations allowed.
+   * @return Budget exhausted at the deadline or after the operations, whichever comes first.
+   */
+  public static Budget within(final long timeout, final TimeUnit unit, final long operations) {
+    return new Budget(true, System.nanoTime() + unit.toNanos(timeout), operations);
+  }
+
+  /**
+   * @param operations Operations allowed.
+   * @return Budget exhausted after the operations.
+   */
+  public static Budget operations(final long operations) {
+    return new Budget(false, 0, operations);
+  }
+
+  /**
+   * Spend one operation, if any are left.  Once refused, the call is truncated and every later operation is refused.
+   *
+   * @return True to go ahead with the operation, false to stop.
+   */
+  public boolean spend() {
+    if (truncated) {
+      return false;
+    }
+    if (spent >= operations || timed && (spent & (CLOCK_INTERVAL - 1)) == 0 && System.nanoTime() - deadline >= 0) {
+      truncated = true;
+      return false;
+    }
+    ++spent;
+    return true;
+  }
+
+  /**
+   * @return True if this budget may ever be exhausted.
+   */
+  boolean isLimited() {
+    return timed || operations != Long.MAX_VALUE;
+  }
+
+  public long getSpent() {
+    return spent;
+  }
+
+  /**
+   * @return True if some work was skipped for lack of budget.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  /**
+   * Result of a budgeted call, and whether it is the best so far rather than the complete one.
+   *
+   * @param <T> Type of result.
+   */
+  public static final class Result<T> {
+    private final T value;
+    private final boolean truncated;
+
+    Result(final T value, final boolean truncated) {
+      this.value = value;
+      this.truncated = truncated;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    public boolean isTruncated() {
+      return truncated;
+    }
+
+    @Override
+    public String toString() {
+      return truncated ? value + " (truncated)" : String.valueOf(value);
+    }
+  }
+}
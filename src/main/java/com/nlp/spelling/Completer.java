@@ -0,0 +1,306 @@
+package com.nlp.spelling;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.AtomicLongMap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefix completion by word frequency, e.g. as you type.
+ *
+ * Words are frozen into an array trie, numbered breadth first, whose node i has edges offsets[i] until offsets[i + 1]
+ * sorted by label, as in {@link Dawg}.  Every node also keeps the ids of the K most frequent words below it, best
+ * first, so a completion costs one binary search per prefix character plus K, and never visits a subtree.
+ *
+ * The fuzzy variant also follows the prefix with one edit (insertion, deletion, substitution or adjacent
+ * transposition), ranking its completions after the exact ones.
+ *
+ * @author Kevin Crosby.
+ */
+public final class Completer {
+  private static final int DEFAULT_TOP = 10;
+
+  private static Completer instance = null;
+
+  private final String[] words; // by id, sorted
+  private final long[] counts; // by id
+  private final int top; // completions kept per node
+  private final int[] offsets; // edges of node i are offsets[i] until offsets[i + 1]; root is node 0
+  private final char[] labels;
+  private final int[] targets;
+  private final int[] starts; // best words below node i are completions[starts[i]] until completions[starts[i + 1]]
+  private final int[] completions;
+
+  /**
+   * Completer over a frequency dictionary, lower cased and trimmed.
+   *
+   * @param source Source of words and their counts.
+   * @param top    Completions kept per prefix, i.e. the most a query returns.
+   */
+  public Completer(final DictionarySource source, final int top) {
+    if (top < 1) {
+      throw new IllegalArgumentException("Completions per prefix must be positive: " + top);
+    }
+    this.top = top;
+    AtomicLongMap<String> map = SpellCorrect.load(source);
+    words = map.asMap().keySet().toArray(new String[0]);
+    Arrays.sort(words);
+    counts = new long[words.length];
+    for (int id = 0; id < words.length; ++id) {
+      counts[id] = map.get(words[id]);
+    }
+
+    // breadth first, each node the range of words sharing its prefix, so children always follow their parent
+    List<int[]> nodes = Lists.newArrayList(); // lo, hi, depth
+    List<Character> edgeLabels = Lists.newArrayList();
+    List<Integer> edgeTargets = Lists.newArrayList();
+    List<Integer> edgeOffsets = Lists.newArrayList();
+    nodes.add(new int[]{0, words.length, 0});
+    for (int i = 0; i < nodes.size(); ++i) {
+      int[] node = nodes.get(i);
+      int depth = node[2];
+      int lo = node[0];
+      if (lo < node[1] && words[lo].length() == depth) {
+        ++lo; // terminal, sorted first
+      }
+      edgeOffsets.add(edgeLabels.size());
+      while (lo < node[1]) {
+        char c = words[lo].charAt(depth);
+        int hi = lo + 1;
+        while (hi < node[1] && words[hi].charAt(depth) == c) {
+          ++hi;
+        }
+        edgeLabels.add(c);
+        edgeTargets.add(nodes.size());
+        nodes.add(new int[]{lo, hi, depth + 1});
+        lo = hi;
+      }
+    }
+    edgeOffsets.add(edgeLabels.size());
+    offsets = Ints.toArray(edgeOffsets);
+    labels = new char[edgeLabels.size()];
+    for (int e = 0; e < labels.length; ++e) {
+      labels[e] = edgeLabels.get(e);
+    }
+    targets = Ints.toArray(edgeTargets);
+
+    // bottom up, as children always follow their parent: the node's own word and the best of its children's
+    int[][] best = new int[nodes.size()][];
+    int[] candidates = new int[0];
+    for (int i = nodes.size() - 1; i >= 0; --i) {
+      int[] node = nodes.get(i);
+      int n = 0;
+      int size = node[0] < node[1] && words[node[0]].length() == node[2] ? 1 : 0;
+      for (int e = offsets[i]; e < offsets[i + 1]; ++e) {
+        size += best[targets[e]].length;
+      }
+      if (candidates.length < size) {
+        candidates = new int[size];
+      }
+      if (node[0] < node[1] && words[node[0]].length() == node[2]) {
+        candidates[n++] = node[0];
+      }
+      for (int e = offsets[i]; e < offsets[i + 1]; ++e) {
+        System.arraycopy(best[targets[e]], 0, candidates, n, best[targets[e]].length);
+        n += best[targets[e]].length;
+      }
+      best[i] = best(candidates, n);
+    }
+    starts = new int[nodes.size() + 1];
+    for (int i = 0; i < nodes.size(); ++i) {
+      starts[i + 1] = starts[i] + best[i].length;
+    }
+    completions = new int[starts[nodes.size()]];
+    for (int i = 0; i < nodes.size(); ++i) {
+      System.arraycopy(best[i], 0, completions, starts[i], best[i].length);
+    }
+  }
+
+  public static Completer getInstance() {
+    if (instance == null) {
+      synchronized (Completer.class) {
+        if (instance == null) {
+          instance = new Completer(DictionarySource.resource(SpellCorrect.FREQUENCY_DICTIONARY), DEFAULT_TOP);
+        }
+      }
+    }
+    return instance;
+  }
+
+  // the top most frequent of n candidate ids, by descending count, then in sorted order of words
+  private int[] best(final int[] candidates, final int n) {
+    Integer[] ids = new Integer[n];
+    for (int j = 0; j < n; ++j) {
+      ids[j] = candidates[j];
+    }
+    Arrays.sort(ids, this::compare);
+    int[] best = new int[Math.min(n, top)];
+    for (int j = 0; j < best.length; ++j) {
+      best[j] = ids[j];
+    }
+    return best;
+  }
+
+  private int compare(final int a, final int b) {
+    int c = Long.compare(counts[b], counts[a]);
+    return c != 0 ? c : Integer.compare(a, b);
+  }
+
+  public int size() {
+    return words.length;
+  }
+
+  public int nodes() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * Approximate memory footprint of the arrays, not counting the words themselves.
+   *
+   * @return Bytes.
+   */
+  public long bytes() {
+    return (long) Long.BYTES * counts.length + (long) Integer.BYTES * offsets.length
+        + (long) Character.BYTES * labels.length + (long) Integer.BYTES * targets.length
+        + (long) Integer.BYTES * starts.length + (long) Integer.BYTES * completions.length;
+  }
+
+  // target of the edge labeled c out of node, or -1
+  private int child(final int node, final char c) {
+    int i = Arrays.binarySearch(labels, offsets[node], offsets[node + 1], c);
+    return i >= 0 ? targets[i] : -1;
+  }
+
+  // node of the characters of prefix from i onwards, starting at node (or -1), or -1
+  private int walk(int node, final CharSequence prefix, final int i) {
+    for (int j = i; j < prefix.length() && node >= 0; ++j) {
+      node = child(node, prefix.charAt(j));
+    }
+    return node;
+  }
+
+  /**
+   * Most frequent words starting with the prefix.
+   *
+   * @param prefix Prefix typed so far.
+   * @param k      Number of completions, at most the number kept per prefix.
+   * @return Completions, most frequent first.
+   */
+  public List<String> complete(final CharSequence prefix, final int k) {
+    int node = walk(0, prefix, 0);
+    if (node < 0) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for (int j = starts[node]; j < Math.min(starts[node + 1], starts[node] + k); ++j) {
+      builder.add(words[completions[j]]);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Most frequent words starting with the prefix, then, if fewer than k, the most frequent words starting with a
+   * prefix one edit away.
+   *
+   * @param prefix Prefix typed so far.
+   * @param k      Number of completions, at most the number kept per prefix.
+   * @return Completions, exact ones first, each most frequent first.
+   */
+  public List<String> completeFuzzy(final CharSequence prefix, final int k) {
+    int exact = walk(0, prefix, 0);
+    Set<String> completions = Sets.newLinkedHashSet();
+    if (exact >= 0) {
+      for (int j = starts[exact]; j < Math.min(starts[exact + 1], starts[exact] + k); ++j) {
+        completions.add(words[this.completions[j]]);
+      }
+    }
+    if (completions.size() < k) {
+      Set<Integer> fuzzy = Sets.newHashSet(); // nodes one edit away
+      int node = 0;
+      for (int i = 0; i < prefix.length() && node >= 0; ++i) { // edits at position i, after the exact node for [0, i)
+        char c = prefix.charAt(i);
+        add(fuzzy, walk(node, prefix, i + 1)); // deletion
+        for (int e = offsets[node]; e < offsets[node + 1]; ++e) {
+          if (labels[e] != c) {
+            add(fuzzy, walk(targets[e], prefix, i + 1)); // substitution
+            add(fuzzy, walk(targets[e], prefix, i)); // insertion
+          }
+        }
+        if (i + 1 < prefix.length() && prefix.charAt(i + 1) != c) { // transposition
+          int swapped = child(node, prefix.charAt(i + 1));
+          if (swapped >= 0) {
+            add(fuzzy, walk(child(swapped, c), prefix, i + 2));
+          }
+        }
+        node = child(node, c);
+      }
+      fuzzy.remove(exact);
+      completions.addAll(merge(fuzzy, k - completions.size(), completions));
+    }
+    return ImmutableList.copyOf(completions);
+  }
+
+  private static void add(final Set<Integer> nodes, final int node) {
+    if (node >= 0) {
+      nodes.add(node);
+    }
+  }
+
+  // the k most frequent words kept by any of the nodes, other than those excluded, merging their lists best first
+  private List<String> merge(final Set<Integer> nodes, final int k, final Set<String> excluded) {
+    int[] lists = Ints.toArray(nodes);
+    int[] cursors = new int[lists.length]; // head of each list
+    PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(lists.length, 1),
+        (a, b) -> compare(completions[cursors[a]], completions[cursors[b]]));
+    for (int m = 0; m < lists.length; ++m) {
+      cursors[m] = starts[lists[m]];
+      if (cursors[m] < starts[lists[m] + 1]) {
+        heads.add(m);
+      }
+    }
+    List<String> merged = Lists.newArrayList();
+    int previous = -1; // a word kept by several nodes comes out of consecutive heads
+    while (merged.size() < k && !heads.isEmpty()) {
+      int m = heads.poll();
+      int id = completions[cursors[m]];
+      if (id != previous && !excluded.contains(words[id])) {
+        merged.add(words[id]);
+      }
+      previous = id;
+      if (++cursors[m] < starts[lists[m] + 1]) {
+        heads.add(m);
+      }
+    }
+    return merged;
+  }
+
+  public static void main(String[] args) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Completer completer = Completer.getInstance();
+    stopwatch.stop();
+    System.out.printf("Building completer of %d words (%d nodes, %d bytes): %d milliseconds\n",
+        completer.size(), completer.nodes(), completer.bytes(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+    Scanner scanner = new Scanner(System.in).useDelimiter("\\n");
+    String prefix;
+    String flag = "xxx";
+    while (true) {
+      System.out.format("Enter prefix (\"%s\" to stop):\t", flag);
+      prefix = scanner.next().toLowerCase().trim();
+      if (prefix.equals(flag)) {
+        break;
+      }
+      System.out.format("%s completions: %s, fuzzy: %s\n", prefix, completer.complete(prefix, DEFAULT_TOP),
+          completer.completeFuzzy(prefix, DEFAULT_TOP));
+    }
+  }
+}
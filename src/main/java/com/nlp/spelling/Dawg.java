@@ -0,0 +1,419 @@
+package com.nlp.spelling;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Minimal deterministic acyclic word graph (DAWG), i.e. a trie whose equivalent suffixes are shared.
+ *
+ * Built from sorted words in one pass by incremental minimization (Daciuk, Mihov, Watson and Watson, 2000), then
+ * frozen into arrays: each node's edges are a run of (label, target) pairs sorted by label.  Membership costs one
+ * binary search per character, and the whole word list is typically an order of magnitude smaller than a
+ * {@link java.util.HashSet} of its words.
+ *
+ * Words within k edits of a query are found by stepping a {@link LevenshteinAutomaton} along the edges, abandoning
+ * a branch as soon as the automaton dies.
+ *
+ * @author Kevin Crosby.
+ */
+public final class Dawg {
+  private static Dawg twl06 = null;
+
+  private final int size; // number of words
+  private final int[] offsets; // edges of node i are offsets[i] until offsets[i + 1]; root is node 0
+  private final char[] labels;
+  private final int[] targets;
+  private final BitSet terminals; // nodes ending a word
+  private final int[] numbers; // words reachable from node i, counting i itself if terminal
+  private final long fingerprint;
+
+  private Dawg(final int size, final int[] offsets, final char[] labels, final int[] targets, final BitSet terminals) {
+    this.size = size;
+    this.offsets = offsets;
+    this.labels = labels;
+    this.targets = targets;
+    this.terminals = terminals;
+    numbers = new int[offsets.length - 1];
+    Arrays.fill(numbers, -1);
+    number(0);
+    fingerprint = fingerprint(offsets, labels, targets, terminals);
+  }
+
+  // of the frozen arrays, which the same words always build the same way, being sorted first
+  private static long fingerprint(final int[] offsets, final char[] labels, final int[] targets,
+                                  final BitSet terminals) {
+    Hasher hasher = Hashing.murmur3_128().newHasher().putInt(offsets.length);
+    for (int offset : offsets) {
+      hasher.putInt(offset);
+    }
+    for (int e = 0; e < labels.length; ++e) {
+      hasher.putChar(labels[e]).putInt(targets[e]);
+    }
+    for (long word : terminals.toLongArray()) {
+      hasher.putLong(word);
+    }
+    return hasher.hash().asLong();
+  }
+
+  // words reachable from node, memoized depth first, since shared nodes may be numbered before their parents
+  private int number(final int node) {
+    if (numbers[node] < 0) {
+      int number = terminals.get(node) ? 1 : 0;
+      for (int e = offsets[node]; e < offsets[node + 1]; ++e) {
+        number += number(targets[e]);
+      }
+      numbers[node] = number;
+    }
+    return numbers[node];
+  }
+
+  /**
+   * Build from words in any order; duplicates are ignored.
+   *
+   * @param words Words.
+   * @return Minimal DAWG of the words.
+   */
+  public static Dawg of(final Collection<String> words) {
+    String[] sorted = ImmutableSet.copyOf(words).toArray(new String[0]);
+    Arrays.sort(sorted);
+    Builder builder = new Builder();
+    for (String word : sorted) {
+      builder.add(word);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Build from the words of a dictionary source, lower cased; counts are ignored.
+   *
+   * @param source Source of words.
+   * @return Minimal DAWG of the words.
+   */
+  public static Dawg of(final DictionarySource source) {
+    Set<String> words = Sets.newHashSet();
+    source.read((word, count) -> words.add(word.toLowerCase()));
+    return of(words);
+  }
+
+  /**
+   * Tournament Word List (TWL06), lower cased.
+   *
+   * @return Shared DAWG of TWL06.
+   */
+  public static Dawg twl06() {
+    if (twl06 == null) {
+      synchronized (Dawg.class) {
+        if (twl06 == null) {
+          twl06 = of(DictionarySource.resource(SpellCorrect.TWL06));
+        }
+      }
+    }
+    return twl06;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int nodes() {
+    return offsets.length - 1;
+  }
+
+  // the same for the same words
+  long fingerprint() {
+    return fingerprint;
+  }
+
+  public int edges() {
+    return labels.length;
+  }
+
+  /**
+   * Approximate memory footprint of the arrays.
+   *
+   * @return Bytes.
+   */
+  public long bytes() {
+    return (long) Integer.BYTES * offsets.length + (long) Character.BYTES * labels.length
+        + (long) Integer.BYTES * targets.length + terminals.size() / Byte.SIZE + (long) Integer.BYTES * numbers.length;
+  }
+
+  // target of the edge labeled c out of node, or -1
+  private int child(final int node, final char c) {
+    int i = Arrays.binarySearch(labels, offsets[node], offsets[node + 1], c);
+    return i >= 0 ? targets[i] : -1;
+  }
+
+  public boolean contains(final CharSequence word) {
+    int node = 0;
+    for (int i = 0; i < word.length() && node >= 0; ++i) {
+      node = child(node, word.charAt(i));
+    }
+    return node >= 0 && terminals.get(node);
+  }
+
+  /**
+   * Rank of word in sorted order, i.e. a minimal perfect hash of the words, for keeping values in arrays.
+   *
+   * @param word Word of interest.
+   * @return Index in [0, size) of word, or -1 if absent.
+   */
+  public int index(final CharSequence word) {
+    int node = 0;
+    int index = 0;
+    for (int i = 0; i < word.length(); ++i) {
+      index += terminals.get(node) ? 1 : 0; // the prefix itself sorts first
+      char c = word.charAt(i);
+      int e = Arrays.binarySearch(labels, offsets[node], offsets[node + 1], c);
+      if (e < 0) {
+        return -1;
+      }
+      for (int j = offsets[node]; j < e; ++j) { // words under smaller labels
+        index += numbers[targets[j]];
+      }
+      node = targets[e];
+    }
+    return terminals.get(node) ? index : -1;
+  }
+
+  /**
+   * Visit all words in sorted order.
+   *
+   * @param consumer Visitor of words.
+   */
+  public void forEach(final Consumer<String> consumer) {
+    forEach(0, new StringBuilder(), consumer);
+  }
+
+  private void forEach(final int node, final StringBuilder prefix, final Consumer<String> consumer) {
+    if (terminals.get(node)) {
+      consumer.accept(prefix.toString());
+    }
+    for (int i = offsets[node]; i < offsets[node + 1]; ++i) {
+      prefix.append(labels[i]);
+      forEach(targets[i], prefix, consumer);
+      prefix.setLength(prefix.length() - 1);
+    }
+  }
+
+  /**
+   * Words within k edits (insertions, deletions, substitutions or adjacent transpositions) of the input.
+   *
+   * @param input Word to match, of at most {@link LevenshteinAutomaton#MAX_LENGTH} characters.
+   * @param k     Maximum number of edits.
+   * @return Map of word to edit distance, in sorted order of words.
+   */
+  public Map<String, Integer> within(final String input, final int k) {
+    return within(new LevenshteinAutomaton(input, k));
+  }
+
+  /**
+   * Words accepted by a Levenshtein automaton.
+   *
+   * @param automaton Levenshtein automaton of the input.
+   * @return Map of word to edit distance, in sorted order of words.
+   */
+  public Map<String, Integer> within(final LevenshteinAutomaton automaton) {
+    int depth = automaton.pattern().length() + automaton.k() + 1; // longest acceptable word, plus start
+    long[][] states = new long[depth + 1][];
+    for (int d = 0; d <= depth; ++d) {
+      states[d] = automaton.newState();
+    }
+    automaton.start(states[0]);
+    Map<String, Integer> matches = Maps.newLinkedHashMap();
+    within(automaton, 0, states, new StringBuilder(), matches);
+    return ImmutableMap.copyOf(matches);
+  }
+
+  // depth first, with states[d] the automaton state after the d characters of prefix
+  private void within(final LevenshteinAutomaton automaton, final int node, final long[][] states,
+                      final StringBuilder prefix, final Map<String, Integer> matches) {
+    int d = prefix.length();
+    if (terminals.get(node)) {
+      int distance = automaton.distance(states[d]);
+      if (distance >= 0) {
+        matches.put(prefix.toString(), distance);
+      }
+    }
+    long[] before = d > 0 ? states[d - 1] : null;
+    char previous = d > 0 ? prefix.charAt(d - 1) : 0;
+    for (int i = offsets[node]; i < offsets[node + 1]; ++i) {
+      if (automaton.step(before, previous, states[d], labels[i], states[d + 1])) {
+        prefix.append(labels[i]);
+        within(automaton, targets[i], states, prefix, matches);
+        prefix.setLength(d);
+      }
+    }
+  }
+
+  /**
+   * Incremental construction from words in sorted order; each finished suffix is replaced by an equivalent node
+   * already registered, if any.
+   */
+  private static final class Builder {
+    private final Map<Node, Node> register = Maps.newHashMap();
+    private final List<Node> path = Lists.newArrayList(); // nodes along the previous word, root first
+    private final Node root = new Node();
+    private String previous = "";
+    private int size = 0;
+
+    private Builder() {
+      path.add(root);
+    }
+
+    private void add(final String word) {
+      if (word.compareTo(previous) <= 0 && size > 0) {
+        throw new IllegalArgumentException(String.format("Words out of order: %s after %s", word, previous));
+      }
+      int common = 0;
+      while (common < word.length() && common < previous.length() && word.charAt(common) == previous.charAt(common)) {
+        ++common;
+      }
+      minimize(common);
+      Node node = path.get(common);
+      for (int i = common; i < word.length(); ++i) {
+        Node next = new Node();
+        node.add(word.charAt(i), next);
+        path.add(next);
+        node = next;
+      }
+      node.terminal = true;
+      previous = word;
+      ++size;
+    }
+
+    // replace nodes of the previous word below depth by registered equivalents
+    private void minimize(final int depth) {
+      for (int d = path.size() - 1; d > depth; --d) {
+        Node child = path.remove(d);
+        Node registered = register.putIfAbsent(child, child);
+        if (registered != null) {
+          path.get(d - 1).replaceLast(registered);
+        }
+      }
+    }
+
+    private Dawg build() {
+      minimize(0);
+      Map<Node, Integer> ids = Maps.newIdentityHashMap();
+      List<Node> nodes = Lists.newArrayList();
+      ids.put(root, 0);
+      nodes.add(root);
+      int edges = 0;
+      for (int i = 0; i < nodes.size(); ++i) { // breadth first numbering
+        Node node = nodes.get(i);
+        edges += node.size;
+        for (int j = 0; j < node.size; ++j) {
+          if (!ids.containsKey(node.children[j])) {
+            ids.put(node.children[j], nodes.size());
+            nodes.add(node.children[j]);
+          }
+        }
+      }
+      int[] offsets = new int[nodes.size() + 1];
+      char[] labels = new char[edges];
+      int[] targets = new int[edges];
+      BitSet terminals = new BitSet(nodes.size());
+      int e = 0;
+      for (int i = 0; i < nodes.size(); ++i) {
+        Node node = nodes.get(i);
+        terminals.set(i, node.terminal);
+        for (int j = 0; j < node.size; ++j) {
+          labels[e] = node.labels[j];
+          targets[e++] = ids.get(node.children[j]);
+        }
+        offsets[i + 1] = e;
+      }
+      return new Dawg(size, offsets, labels, targets, terminals);
+    }
+  }
+
+  /**
+   * Mutable node during construction; equal if both end words (or not) and have the same labels to the same
+   * (already minimized, hence canonical) children.
+   */
+  private static final class Node {
+    private boolean terminal = false;
+    private char[] labels = new char[1];
+    private Node[] children = new Node[1];
+    private int size = 0;
+
+    private void add(final char label, final Node child) {
+      if (size == labels.length) {
+        labels = Arrays.copyOf(labels, 2 * size);
+        children = Arrays.copyOf(children, 2 * size);
+      }
+      labels[size] = label;
+      children[size++] = child;
+    }
+
+    private void replaceLast(final Node child) {
+      children[size - 1] = child;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Node)) {
+        return false;
+      }
+      Node that = (Node) o;
+      if (terminal != that.terminal || size != that.size) {
+        return false;
+      }
+      for (int i = 0; i < size; ++i) {
+        if (labels[i] != that.labels[i] || children[i] != that.children[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = terminal ? 1 : 0;
+      for (int i = 0; i < size; ++i) {
+        hash = 31 * (31 * hash + labels[i]) + System.identityHashCode(children[i]);
+      }
+      return hash;
+    }
+  }
+
+  public static void main(String[] args) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Dawg dawg = Dawg.twl06();
+    stopwatch.stop();
+    System.out.printf("Building DAWG of %d words (%d nodes, %d edges, %d bytes): %d milliseconds\n",
+        dawg.size(), dawg.nodes(), dawg.edges(), dawg.bytes(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+    Scanner scanner = new Scanner(System.in).useDelimiter("\\n");
+    String word;
+    String flag = "xxx";
+    while (true) {
+      System.out.format("Enter word (\"%s\" to stop):\t", flag);
+      word = scanner.next().toLowerCase().trim();
+      if (word.equals(flag)) {
+        break;
+      }
+      System.out.format("%s valid: %s, within 2 edits: %s\n", word, dawg.contains(word), dawg.within(word, 2));
+    }
+  }
+}
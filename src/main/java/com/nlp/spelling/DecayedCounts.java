@@ -0,0 +1,104 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.Maps;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Word counts that decay exponentially with time, e.g. of words seen or accepted in production, so recent usage
+ * outweighs old usage and words no longer used are forgotten.
+ *
+ * Each count is kept with the time it was last brought up to date, and is decayed lazily, on the next increment or
+ * snapshot.  Counts are split into stripes by hash, each with a lock of its own, so concurrent increments of
+ * different words seldom contend, and a snapshot only ever holds one stripe at a time.
+ *
+ * @author Kevin Crosby.
+ */
+final class DecayedCounts {
+  private static final int STRIPES = 16; // a power of 2
+
+  private final double rate; // decay per nanosecond
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  /**
+   * @param halfLife Time for a count to halve.
+   * @param unit     Unit of half life.
+   */
+  DecayedCounts(final long halfLife, final TimeUnit unit) {
+    if (halfLife <= 0) {
+      throw new IllegalArgumentException("Half life must be positive: " + halfLife);
+    }
+    rate = Math.log(2) / unit.toNanos(halfLife);
+    for (int s = 0; s < STRIPES; ++s) {
+      stripes[s] = new Stripe();
+    }
+  }
+
+  /**
+   * Count and time of its last update.
+   */
+  private static final class Count {
+    private double value;
+    private long time; // in System.nanoTime() terms
+  }
+
+  /**
+   * Counts of the words hashing to one stripe, guarded by the stripe itself.
+   */
+  private static final class Stripe {
+    private final Map<String, Count> counts = Maps.newHashMap();
+  }
+
+  private Stripe stripe(final String word) {
+    int hash = word.hashCode();
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  private double decay(final Count count, final long now) {
+    return count.value * Math.exp(-rate * (now - count.time));
+  }
+
+  /**
+   * Add one to the count of a word, as of now.
+   *
+   * @param word Word seen.
+   */
+  void increment(final String word) {
+    long now = System.nanoTime();
+    Stripe stripe = stripe(word);
+    synchronized (stripe) {
+      Count count = stripe.counts.computeIfAbsent(word, key -> new Count());
+      count.value = decay(count, now) + 1;
+      count.time = now;
+    }
+  }
+
+  /**
+   * Decayed counts as of now, forgetting those decayed below the minimum.
+   *
+   * @param minimum Smallest count kept.
+   * @return Map of word to decayed count.
+   */
+  Map<String, Double> snapshot(final double minimum) {
+    long now = System.nanoTime();
+    Map<String, Double> snapshot = Maps.newHashMap();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        Iterator<Entry<String, Count>> iterator = stripe.counts.entrySet().iterator();
+        while (iterator.hasNext()) {
+          Entry<String, Count> entry = iterator.next();
+          double value = decay(entry.getValue(), now);
+          if (value < minimum) {
+            iterator.remove();
+          } else {
+            snapshot.put(entry.getKey(), value);
+          }
+        }
+      }
+    }
+    return snapshot;
+  }
+}
@@ -0,0 +1,343 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Symmetric delete index: every delete of every dictionary word, up to the maximum edit distance and including the word
+ * itself, mapped to the ids of the words it was derived from, in ascending order.
+ *
+ * Deletes are split into shards by hash.  A {@link Builder} hands chunks of words to a fork/join pool as they arrive,
+ * each task writing its deletes into primitive per shard buffers of its own, and then merges every shard in a task of
+ * its own, so no two threads ever write to the same buffer or table and no lock is taken.
+ *
+ * Keys are packed end to end in one char array per shard and found by open addressing, so neither building nor
+ * probing creates a string per delete.  Most deletes of a misspelling are no key at all, and as every slot holds its
+ * key's hash too, those are turned away after one cache line, without touching the keys.
+ *
+ * @author Kevin Crosby.
+ */
+final class DeleteIndex {
+  private static final int SHARD_BITS = 6;
+  private static final int SHARDS = 1 << SHARD_BITS;
+  private static final int CHUNK_SIZE = 1 << 12; // words per build task
+
+  private final String[] words; // by id
+  private final Shard[] shards;
+
+  private DeleteIndex(final String[] words, final Shard[] shards) {
+    this.words = words;
+    this.shards = shards;
+  }
+
+  // high bits, independent of the low bits used within a shard
+  private static int shardOf(final int hash) {
+    return (hash * 0x9E3779B9) >>> (Integer.SIZE - SHARD_BITS);
+  }
+
+  private static int spread(final int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  // slots of an open addressing table for up to n keys, at most half full
+  private static int capacity(final int n) {
+    return Integer.highestOneBit(Math.max(2 * n, 2) - 1) << 1;
+  }
+
+  /**
+   * Whether a word of this length has deletes at this edit distance.  A single letter word has the empty string as its
+   * only delete, but longer words are not deleted down to nothing.
+   *
+   * @param n Word length.
+   * @param d Edit distance.
+   * @return True if so.
+   */
+  private static boolean deletable(final int n, final int d) {
+    return n > d || n == 1 && d == 1;
+  }
+
+  String word(final int id) {
+    return words[id];
+  }
+
+  /**
+   * Shard holding a delete, if indexed.
+   *
+   * @param hash Hash of the delete, as {@link String#hashCode()}.
+   * @return Shard.
+   */
+  Shard shard(final int hash) {
+    return shards[shardOf(hash)];
+  }
+
+  /**
+   * Deletes of one shard, with their postings.
+   */
+  static final class Shard {
+    private final long[] table; // hash and key + 1 by slot, 0 if empty
+    private final int[] starts; // characters of key k are chars[starts[k]] until chars[starts[k + 1]]
+    private final char[] chars;
+    private final int[] offsets; // ids of key k are ids[offsets[k]] until ids[offsets[k + 1]]
+    private final int[] ids;
+
+    private Shard(final int[] hashes, final int[] starts, final char[] chars, final int[] offsets, final int[] ids) {
+      this.starts = starts;
+      this.chars = chars;
+      this.offsets = offsets;
+      this.ids = ids;
+      table = new long[capacity(hashes.length)];
+      int mask = table.length - 1;
+      for (int key = 0; key < hashes.length; ++key) {
+        int slot = spread(hashes[key]) & mask;
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = (long) hashes[key] << Integer.SIZE | (key + 1); // no second lookup to compare hashes
+      }
+    }
+
+    /**
+     * @param delete Delete of some word, or a word itself.
+     * @param hash   Hash of the delete, as {@link String#hashCode()}.
+     * @return Key, or -1 if not indexed.
+     */
+    int find(final CharSequence delete, final int hash) {
+      int mask = table.length - 1;
+      for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+        if ((int) (table[slot] >>> Integer.SIZE) == hash && matches((int) table[slot] - 1, delete)) {
+          return (int) table[slot] - 1;
+        }
+      }
+      return -1;
+    }
+
+    private boolean matches(final int key, final CharSequence delete) {
+      int start = starts[key];
+      if (starts[key + 1] - start != delete.length()) {
+        return false;
+      }
+      for (int i = 0; i < delete.length(); ++i) {
+        if (chars[start + i] != delete.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @param key Key.
+     * @return Index of its first posting.
+     */
+    int from(final int key) {
+      return offsets[key];
+    }
+
+    /**
+     * @param key Key.
+     * @return Index past its last posting.
+     */
+    int to(final int key) {
+      return offsets[key + 1];
+    }
+
+    /**
+     * @param i Index of a posting.
+     * @return Word id.
+     */
+    int id(final int i) {
+      return ids[i];
+    }
+  }
+
+  /**
+   * Deletes of one chunk of words, in per shard buffers.
+   */
+  private static final class Chunk implements Deletes.Visitor {
+    private final char[][] chars = new char[SHARDS][]; // deletes end to end
+    private final int[][] ends = new int[SHARDS][]; // of each delete in chars
+    private final int[][] hashes = new int[SHARDS][];
+    private final int[][] ids = new int[SHARDS][];
+    private final int[] sizes = new int[SHARDS];
+    private int id; // of the word being visited
+
+    private Chunk(final String[] words, final int first) {
+      for (int s = 0; s < SHARDS; ++s) {
+        chars[s] = new char[64];
+        ends[s] = new int[16];
+        hashes[s] = new int[16];
+        ids[s] = new int[16];
+      }
+      Deletes deletes = new Deletes();
+      for (int i = 0; i < words.length; ++i) {
+        id = first + i;
+        for (int d = 0; d <= SpellingIndex.EDIT_DISTANCE_MAX; ++d) {
+          if (d == 0 || deletable(words[i].length(), d)) {
+            deletes.forEach(words[i], d, this);
+          }
+        }
+      }
+    }
+
+    @Override
+    public boolean visit(final Deletes delete) {
+      int hash = delete.hash();
+      int s = shardOf(hash);
+      int size = sizes[s];
+      if (size == ids[s].length) {
+        ends[s] = Arrays.copyOf(ends[s], 2 * size);
+        hashes[s] = Arrays.copyOf(hashes[s], 2 * size);
+        ids[s] = Arrays.copyOf(ids[s], 2 * size);
+      }
+      int start = size > 0 ? ends[s][size - 1] : 0;
+      int end = start + delete.length();
+      if (end > chars[s].length) {
+        chars[s] = Arrays.copyOf(chars[s], Math.max(2 * chars[s].length, end));
+      }
+      for (int i = 0; i < delete.length(); ++i) {
+        chars[s][start + i] = delete.charAt(i);
+      }
+      ends[s][size] = end;
+      hashes[s][size] = hash;
+      ids[s][size] = id;
+      sizes[s] = size + 1;
+      return true;
+    }
+
+    private void release(final int s) {
+      chars[s] = null;
+      ends[s] = null;
+      hashes[s] = null;
+      ids[s] = null;
+    }
+  }
+
+  /**
+   * Incremental builder, deriving deletes in the background while words are still being added.  Not thread safe:
+   * words are to be added by one thread.
+   */
+  static final class Builder {
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final List<String> words = Lists.newArrayList();
+    private final List<ForkJoinTask<Chunk>> chunks = Lists.newArrayList();
+    private int submitted = 0; // words handed to build tasks
+
+    /**
+     * Add a word, not already added.
+     *
+     * @param word Dictionary word.
+     * @return This builder.
+     */
+    Builder add(final String word) {
+      words.add(word);
+      if (words.size() - submitted == CHUNK_SIZE) {
+        submit();
+      }
+      return this;
+    }
+
+    private void submit() {
+      String[] chunk = words.subList(submitted, words.size()).toArray(new String[0]);
+      int first = submitted;
+      chunks.add(pool.submit(() -> new Chunk(chunk, first)));
+      submitted = words.size();
+    }
+
+    /**
+     * Wait for the outstanding chunks, then merge the shards in parallel.
+     *
+     * @return Delete index of the words added.
+     */
+    DeleteIndex build() {
+      if (submitted < words.size()) {
+        submit();
+      }
+      List<Chunk> buffers = Lists.newArrayList();
+      for (ForkJoinTask<Chunk> chunk : chunks) {
+        buffers.add(chunk.join());
+      }
+      List<ForkJoinTask<Shard>> merges = Lists.newArrayList();
+      for (int s = 0; s < SHARDS; ++s) {
+        int shard = s;
+        merges.add(pool.submit(() -> merge(buffers, shard)));
+      }
+      Shard[] shards = new Shard[SHARDS];
+      for (int s = 0; s < SHARDS; ++s) {
+        shards[s] = merges.get(s).join();
+      }
+      return new DeleteIndex(words.toArray(new String[0]), shards);
+    }
+
+    // chunks in id order, so ids come out ascending
+    private static Shard merge(final List<Chunk> buffers, final int s) {
+      int entries = 0;
+      int length = 0;
+      for (Chunk chunk : buffers) {
+        entries += chunk.sizes[s];
+        length += chunk.sizes[s] > 0 ? chunk.ends[s][chunk.sizes[s] - 1] : 0;
+      }
+      int[] table = new int[capacity(entries)]; // key + 1, at most one key per entry
+      int mask = table.length - 1;
+      int[] hashes = new int[entries];
+      int[] starts = new int[entries + 1];
+      char[] chars = new char[length];
+      int[] counts = new int[entries];
+      int[] keyOf = new int[entries]; // by entry
+      int keys = 0;
+      int e = 0;
+      for (Chunk chunk : buffers) {
+        int start = 0;
+        for (int i = 0; i < chunk.sizes[s]; ++i) {
+          int end = chunk.ends[s][i];
+          int hash = chunk.hashes[s][i];
+          int slot = spread(hash) & mask;
+          int key;
+          while ((key = table[slot] - 1) >= 0
+              && !(hashes[key] == hash && equal(chars, starts[key], starts[key + 1], chunk.chars[s], start, end))) {
+            slot = (slot + 1) & mask;
+          }
+          if (key < 0) {
+            key = keys++;
+            table[slot] = key + 1;
+            hashes[key] = hash;
+            System.arraycopy(chunk.chars[s], start, chars, starts[key], end - start);
+            starts[key + 1] = starts[key] + end - start;
+          }
+          counts[key]++;
+          keyOf[e++] = key;
+          start = end;
+        }
+      }
+      int[] offsets = new int[keys + 1];
+      for (int key = 0; key < keys; ++key) {
+        offsets[key + 1] = offsets[key] + counts[key];
+      }
+      int[] ids = new int[entries];
+      int[] cursors = Arrays.copyOf(offsets, keys);
+      e = 0;
+      for (Chunk chunk : buffers) {
+        for (int i = 0; i < chunk.sizes[s]; ++i) {
+          ids[cursors[keyOf[e++]]++] = chunk.ids[s][i];
+        }
+        chunk.release(s); // let go as soon as merged
+      }
+      return new Shard(Arrays.copyOf(hashes, keys), Arrays.copyOf(starts, keys + 1),
+          Arrays.copyOf(chars, starts[keys]), offsets, ids);
+    }
+
+    private static boolean equal(final char[] a, final int from, final int to, final char[] b, final int start, final int end) {
+      if (to - from != end - start) {
+        return false;
+      }
+      for (int i = 0; i < to - from; ++i) {
+        if (a[from + i] != b[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.nlp.spelling;
+
+import java.util.Arrays;
+
+/**
+ * Reusable enumerator of the distinct deletes of a word, i.e. its distinct subsequences some number of characters
+ * shorter, each visited once as a view over an internal buffer.
+ *
+ * Repeats are ruled out combinatorially rather than with a set: a delete is spelled only from the leftmost occurrence
+ * of each next character after the previous one, and as every subsequence has exactly one such leftmost embedding,
+ * "balloon" yields "ballon" once rather than twice.  Positions are not bit masks, so words may be of any length.
+ *
+ * The hash of each delete, equal to that of the same {@link String}, is kept as a prefix hash per character chosen, so
+ * costs nothing extra.  Not thread safe: one enumerator per thread.
+ *
+ * @author Kevin Crosby.
+ */
+final class Deletes implements CharSequence {
+
+  /**
+   * Visitor of deletes.  The delete is only valid during the visit.
+   */
+  @FunctionalInterface
+  interface Visitor {
+    /**
+     * @param delete Current delete.
+     * @return True to go on, false to stop.
+     */
+    boolean visit(Deletes delete);
+  }
+
+  private char[] word = new char[16];
+  private int[] previous = new int[16]; // index of the previous occurrence of the same character, or -1
+  private char[] chars = new char[16]; // current delete
+  private int[] hashes = new int[17]; // hash of the first k characters of the current delete
+  private int n; // word length
+  private int length; // delete length
+
+  /**
+   * Visit every distinct delete of the word with exactly d characters deleted, in lexicographic order of positions.
+   *
+   * @param word    Word.
+   * @param d       Number of characters to delete.
+   * @param visitor Visitor of deletes.
+   * @return False if the visitor stopped early.
+   */
+  boolean forEach(final CharSequence word, final int d, final Visitor visitor) {
+    n = word.length();
+    length = n - d;
+    if (length < 0) {
+      return true;
+    }
+    if (n > this.word.length) {
+      this.word = new char[n];
+      previous = new int[n];
+      chars = new char[n];
+      hashes = new int[n + 1];
+    }
+    for (int j = 0; j < n; ++j) {
+      char c = word.charAt(j);
+      this.word[j] = c;
+      int i = j - 1;
+      while (i >= 0 && this.word[i] != c) {
+        --i;
+      }
+      previous[j] = i;
+    }
+    return visit(0, 0, visitor);
+  }
+
+  // choose the k-th character of the delete from position p onwards
+  private boolean visit(final int k, final int p, final Visitor visitor) {
+    if (k == length) {
+      return visitor.visit(this);
+    }
+    for (int j = p; j <= n - (length - k); ++j) {
+      if (previous[j] < p) { // leftmost occurrence from p onwards
+        chars[k] = word[j];
+        hashes[k + 1] = 31 * hashes[k] + word[j];
+        if (!visit(k + 1, j + 1, visitor)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return Hash of the current delete, as {@link String#hashCode()}.
+   */
+  int hash() {
+    return hashes[length];
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(final int index) {
+    return chars[index];
+  }
+
+  @Override
+  public CharSequence subSequence(final int start, final int end) {
+    return new String(Arrays.copyOfRange(chars, start, end));
+  }
+
+  @Override
+  public String toString() {
+    return new String(chars, 0, length);
+  }
+}
@@ -0,0 +1,74 @@
+package com.nlp.spelling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Source of (word, count) entries for a frequency dictionary.
+ *
+ * Text sources hold one entry per line, the word followed by whitespace and an optional count (default 1).  Binary
+ * sources are written by {@link BinaryDictionary#write(java.util.Map, Path)} and are loaded by memory mapping.
+ *
+ * @author Kevin Crosby.
+ */
+@FunctionalInterface
+public interface DictionarySource {
+
+  /**
+   * Visitor of dictionary entries.
+   */
+  @FunctionalInterface
+  interface EntryConsumer {
+    void accept(String word, long count);
+  }
+
+  /**
+   * Visit every entry, in source order.  Words may repeat, in which case their counts add.
+   *
+   * @param consumer Visitor of entries.
+   */
+  void read(EntryConsumer consumer);
+
+  /**
+   * Text dictionary on the class path.
+   *
+   * @param resource Absolute resource name.
+   * @return Dictionary source.
+   */
+  static DictionarySource resource(final String resource) {
+    return new TextDictionary(() -> {
+      InputStream inputStream = DictionarySource.class.getResourceAsStream(resource);
+      if (inputStream == null) {
+        throw new IOException("Missing resource " + resource);
+      }
+      return inputStream;
+    });
+  }
+
+  /**
+   * Dictionary file, binary if it starts with the binary magic number, otherwise text.
+   *
+   * @param path Dictionary file.
+   * @return Dictionary source.
+   */
+  static DictionarySource file(final Path path) {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+      while (magic.hasRemaining() && channel.read(magic) >= 0) {
+        // fill
+      }
+      magic.flip();
+      if (magic.remaining() == Integer.BYTES && magic.getInt() == BinaryDictionary.MAGIC) {
+        return BinaryDictionary.load(path);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return new TextDictionary(() -> Files.newInputStream(path));
+  }
+}
@@ -0,0 +1,155 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/**
+ * Levenshtein automaton of a pattern, accepting every string within k edits of it, with adjacent transpositions
+ * counting as one edit (optimal string alignment, as in {@link DamerauLevenshtein}).
+ *
+ * The nondeterministic automaton is simulated bit-parallel (Wu and Manber, with Hyyrö's transpositions): a state is
+ * one bit mask per number of errors e, where bit i is set if the first i pattern characters can be matched by the
+ * input so far with e errors.  One input character is then a handful of shifts, ands and ors per error level, so the
+ * automaton can be stepped along the edges of a trie or DAWG, sharing work between words with common prefixes.
+ *
+ * Patterns are limited to 63 characters, so that a mask fits in a long.
+ *
+ * @author Kevin Crosby.
+ */
+public final class LevenshteinAutomaton {
+  public static final int MAX_LENGTH = Long.SIZE - 1;
+  private static final int ASCII = 128;
+
+  private final String pattern;
+  private final int k;
+  private final long accept; // bit of the final state
+  private final long states; // bits of all states, 0 through pattern length
+  private final long[] asciiMasks; // bit i + 1 set if pattern[i] == c
+  private final Map<Character, Long> otherMasks;
+
+  /**
+   * @param pattern Pattern of at most {@link #MAX_LENGTH} characters.
+   * @param k       Maximum number of edits.
+   */
+  public LevenshteinAutomaton(final String pattern, final int k) {
+    if (pattern.length() > MAX_LENGTH || k < 0) {
+      throw new IllegalArgumentException(String.format("Pattern length %d (at most %d) or edits %d (at least 0)",
+          pattern.length(), MAX_LENGTH, k));
+    }
+    this.pattern = pattern;
+    this.k = k;
+    accept = 1L << pattern.length();
+    states = (accept << 1) - 1;
+    asciiMasks = new long[ASCII];
+    otherMasks = Maps.newHashMap();
+    for (int i = 0; i < pattern.length(); ++i) {
+      char c = pattern.charAt(i);
+      if (c < ASCII) {
+        asciiMasks[c] |= 2L << i;
+      } else {
+        otherMasks.merge(c, 2L << i, (a, b) -> a | b);
+      }
+    }
+  }
+
+  public String pattern() {
+    return pattern;
+  }
+
+  public int k() {
+    return k;
+  }
+
+  private long mask(final char c) {
+    return c < ASCII ? asciiMasks[c] : otherMasks.getOrDefault(c, 0L);
+  }
+
+  /**
+   * Fresh state array, one mask per number of errors.
+   *
+   * @return State array of length k + 1.
+   */
+  public long[] newState() {
+    return new long[k + 1];
+  }
+
+  /**
+   * Initial state, before any input: e errors may delete the first e pattern characters.
+   *
+   * @param state State array to fill.
+   */
+  public void start(final long[] state) {
+    state[0] = 1;
+    for (int e = 1; e <= k; ++e) {
+      state[e] = (state[e - 1] | state[e - 1] << 1) & states;
+    }
+  }
+
+  /**
+   * Step on one input character.
+   *
+   * @param before   State before the previous character, or null at the first character (no transposition yet).
+   * @param previous Previous character, ignored if before is null.
+   * @param state    Current state.
+   * @param c        Input character.
+   * @param next     State array to fill; must not alias the others.
+   * @return True if some string with this prefix can still be accepted.
+   */
+  public boolean step(final long[] before, final char previous, final long[] state, final char c, final long[] next) {
+    long mask = mask(c);
+    long transposed = before != null ? (mask << 1) & mask(previous) : 0; // pattern has c then previous
+    next[0] = (state[0] << 1) & mask; // no mask bits past the pattern
+    for (int e = 1; e <= k; ++e) {
+      long matched = (state[e] << 1) & mask;
+      long inserted = state[e - 1];
+      long substituted = state[e - 1] << 1;
+      long deleted = next[e - 1] << 1; // from the pattern, without input
+      long swapped = before != null ? (before[e - 1] << 2) & transposed : 0;
+      next[e] = (matched | inserted | substituted | deleted | swapped) & states;
+    }
+    return next[k] != 0; // masks grow with errors
+  }
+
+  /**
+   * Number of errors of the current state, if accepting.
+   *
+   * @param state Current state.
+   * @return Fewest errors with which the input so far matches the whole pattern, or -1 if more than k.
+   */
+  public int distance(final long[] state) {
+    for (int e = 0; e <= k; ++e) {
+      if ((state[e] & accept) != 0) {
+        return e;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Bounded edit distance of a word from the pattern.
+   *
+   * @param word Word to match.
+   * @return Edit distance, or -1 if more than k.
+   */
+  public int distance(final CharSequence word) {
+    long[][] states = new long[3][];
+    for (int i = 0; i < states.length; ++i) {
+      states[i] = newState();
+    }
+    start(states[1]);
+    long[] before = null;
+    char previous = 0;
+    for (int i = 0; i < word.length(); ++i) {
+      long[] state = states[(i + 1) % 3];
+      long[] next = states[(i + 2) % 3];
+      char c = word.charAt(i);
+      if (!step(before, previous, state, c, next)) {
+        return -1;
+      }
+      before = state;
+      previous = c;
+    }
+    return distance(states[(word.length() + 1) % 3]);
+  }
+}
@@ -0,0 +1,203 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.nlp.spelling.SmartSpeller.Verbosity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compact binary snapshot of cached lookups, to warm the cache of a new spell corrector instead of recomputing its hot
+ * working set one miss at a time.
+ *
+ * Layout (big endian): magic, version, fingerprint of the dictionaries (long), number of entries n, then n entries of
+ * verbosity (byte), input length (int), UTF-8 input, number of suggestions (int) and, best first, each suggestion as
+ * its word id (int, or -1 for the input itself) and its edit distance (byte).  Suggestions are stored as ids rather
+ * than words, so a snapshot is only valid for dictionaries with the same fingerprint, and any other is rejected as
+ * stale.
+ *
+ * @author Kevin Crosby.
+ */
+final class LookupSnapshot {
+  static final int MAGIC = 0x00534E50; // "\0SNP"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+  private static final int ENTRY_MIN = 1 + 2 * Integer.BYTES; // verbosity, input length and number of suggestions
+  private static final int SUGGESTION_SIZE = Integer.BYTES + 1; // word id and edit distance
+  private static final int INPUT = -1; // id of the input itself, e.g. when there is no other suggestion
+  private static final int STALE = -1;
+
+  private LookupSnapshot() {
+  }
+
+  /**
+   * Visitor of snapshot entries.
+   */
+  @FunctionalInterface
+  interface EntryConsumer {
+    void accept(String input, Verbosity verbosity, Map<String, Integer> suggestions);
+  }
+
+  /**
+   * Source of snapshot entries.
+   */
+  @FunctionalInterface
+  interface Entries {
+    void forEach(EntryConsumer consumer);
+  }
+
+  /**
+   * Write a snapshot file, replacing any previous one atomically, so a reader never sees a partial snapshot.
+   *
+   * @param entries     Entries to write.
+   * @param fingerprint Fingerprint of the dictionaries the suggestions were found in.
+   * @param ids         Word id of a suggestion, or -1 if not a dictionary word.
+   * @param path        Snapshot file.
+   * @return Number of entries written.
+   */
+  static int write(final Entries entries, final long fingerprint, final ToIntFunction<String> ids, final Path path) {
+    List<byte[]> inputs = Lists.newArrayList();
+    List<Verbosity> verbosities = Lists.newArrayList();
+    List<int[]> suggestions = Lists.newArrayList();
+    List<byte[]> distances = Lists.newArrayList();
+    int[] length = {HEADER_SIZE};
+    entries.forEach((input, verbosity, ranked) -> {
+      int[] encoded = new int[ranked.size()];
+      byte[] edits = new byte[ranked.size()];
+      int i = 0;
+      for (Entry<String, Integer> suggestion : ranked.entrySet()) {
+        int id = suggestion.getKey().equals(input) ? INPUT : ids.applyAsInt(suggestion.getKey());
+        if (id < 0 && !suggestion.getKey().equals(input)) {
+          return; // not in the dictionaries, so cannot be restored
+        }
+        encoded[i] = id;
+        edits[i++] = suggestion.getValue().byteValue();
+      }
+      byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+      inputs.add(bytes);
+      verbosities.add(verbosity);
+      suggestions.add(encoded);
+      distances.add(edits);
+      length[0] += ENTRY_MIN + bytes.length + encoded.length * SUGGESTION_SIZE;
+    });
+
+    int n = inputs.size();
+    ByteBuffer buffer = ByteBuffer.allocate(length[0]);
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putInt(n);
+    for (int j = 0; j < n; ++j) {
+      buffer.put((byte) verbosities.get(j).ordinal());
+      buffer.putInt(inputs.get(j).length).put(inputs.get(j));
+      buffer.putInt(suggestions.get(j).length);
+      for (int i = 0; i < suggestions.get(j).length; ++i) {
+        buffer.putInt(suggestions.get(j)[i]).put(distances.get(j)[i]);
+      }
+    }
+    buffer.flip();
+
+    Path target = path.toAbsolutePath();
+    Path parent = target.getParent();
+    if (parent != null) {
+      parent.toFile().mkdirs();
+    }
+    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    try {
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return n;
+  }
+
+  /**
+   * Map a snapshot file and visit its entries, unless it is stale.  A file that is not a whole snapshot of this
+   * version, e.g. truncated, corrupt or foreign, counts as stale, and none of its entries are visited.
+   *
+   * @param path        Snapshot file.
+   * @param fingerprint Fingerprint of the current dictionaries.
+   * @param size        Number of word ids.
+   * @param words       Word of a word id.
+   * @param consumer    Visitor of entries, with suggestions best first.
+   * @return Number of entries visited, or -1 if the snapshot is stale.
+   */
+  static int read(final Path path, final long fingerprint, final int size, final IntFunction<String> words,
+                  final EntryConsumer consumer) {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // mapping outlives channel
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+        || buffer.getLong() != fingerprint) {
+      return STALE;
+    }
+    Verbosity[] verbosities = Verbosity.values();
+    int n = buffer.getInt();
+    if (n < 0 || n > buffer.remaining() / ENTRY_MIN) {
+      return STALE;
+    }
+    List<String> inputs = Lists.newArrayListWithCapacity(n);
+    List<Verbosity> levels = Lists.newArrayListWithCapacity(n);
+    List<Map<String, Integer>> suggestions = Lists.newArrayListWithCapacity(n);
+    byte[] bytes = new byte[0];
+    for (int j = 0; j < n; ++j) { // parsed whole before any is visited, so a corrupt tail loads nothing
+      if (buffer.remaining() < ENTRY_MIN) {
+        return STALE;
+      }
+      int ordinal = buffer.get();
+      int length = buffer.getInt();
+      if (ordinal < 0 || ordinal >= verbosities.length || length < 0 || length > buffer.remaining() - Integer.BYTES) {
+        return STALE;
+      }
+      if (bytes.length < length) {
+        bytes = new byte[Math.max(length, 2 * bytes.length)];
+      }
+      buffer.get(bytes, 0, length); // bulk copy
+      String input = new String(bytes, 0, length, StandardCharsets.UTF_8);
+      int count = buffer.getInt();
+      if (count < 0 || count > buffer.remaining() / SUGGESTION_SIZE) {
+        return STALE;
+      }
+      Map<String, Integer> ranked = Maps.newLinkedHashMapWithExpectedSize(count);
+      for (int i = 0; i < count; ++i) {
+        int id = buffer.getInt();
+        int distance = buffer.get();
+        if (id < INPUT || id >= size || distance < 0
+            || ranked.put(id == INPUT ? input : words.apply(id), distance) != null) {
+          return STALE;
+        }
+      }
+      inputs.add(input);
+      levels.add(verbosities[ordinal]);
+      suggestions.add(ImmutableMap.copyOf(ranked));
+    }
+    if (buffer.hasRemaining()) {
+      return STALE;
+    }
+    for (int j = 0; j < n; ++j) {
+      consumer.accept(inputs.get(j), levels.get(j), suggestions.get(j));
+    }
+    return n;
+  }
+}
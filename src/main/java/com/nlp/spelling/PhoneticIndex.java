@@ -0,0 +1,92 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.codec.language.DoubleMetaphone;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Words grouped by their Double Metaphone codes, primary and alternate, so that words sounding alike may be found
+ * however many edits apart they are, e.g. "nite" and "night".
+ *
+ * Groups are runs of word ids in one packed array, and a lookup is one hash probe per code of the input.
+ *
+ * @author Kevin Crosby.
+ */
+final class PhoneticIndex {
+  private static final int CODE_LENGTH = 6; // longer than the default 4, which lumps together too many long words
+
+  private final DoubleMetaphone encoder;
+  private final String[] words; // by id
+  private final Map<String, Integer> groups; // code to group
+  private final int[] offsets; // ids of group g are ids[offsets[g]] until ids[offsets[g + 1]]
+  private final int[] ids;
+
+  PhoneticIndex(final Collection<String> vocabulary) {
+    encoder = new DoubleMetaphone();
+    encoder.setMaxCodeLen(CODE_LENGTH); // not changed afterwards, so encoding is thread safe
+    words = vocabulary.toArray(new String[0]);
+    int n = words.length;
+
+    Map<String, Integer> groups = Maps.newHashMap();
+    int[] memberships = new int[2 * n]; // group of primary and alternate code per word, or -1
+    int[] sizes = new int[2 * n];
+    for (int id = 0; id < n; ++id) {
+      String[] codes = codes(words[id]);
+      for (int c = 0; c < 2; ++c) {
+        memberships[2 * id + c] = codes[c] == null ? -1 : groups.computeIfAbsent(codes[c], code -> groups.size());
+        if (memberships[2 * id + c] >= 0) {
+          sizes[memberships[2 * id + c]]++;
+        }
+      }
+    }
+    int m = groups.size();
+    offsets = new int[m + 1];
+    for (int g = 0; g < m; ++g) {
+      offsets[g + 1] = offsets[g] + sizes[g];
+    }
+    ids = new int[offsets[m]];
+    int[] cursors = Arrays.copyOf(offsets, m);
+    for (int i = 0; i < memberships.length; ++i) {
+      if (memberships[i] >= 0) {
+        ids[cursors[memberships[i]]++] = i / 2;
+      }
+    }
+    this.groups = ImmutableMap.copyOf(groups);
+  }
+
+  // primary and alternate code, either null if empty or a repeat
+  private String[] codes(final String word) {
+    String primary = encoder.doubleMetaphone(word, false);
+    String alternate = encoder.doubleMetaphone(word, true);
+    primary = primary == null || primary.isEmpty() ? null : primary;
+    alternate = alternate == null || alternate.isEmpty() || alternate.equals(primary) ? null : alternate;
+    return new String[]{primary, alternate};
+  }
+
+  /**
+   * Words sharing a primary or alternate code with the input.
+   *
+   * @param input Word to match.
+   * @return Words sounding like the input, without repeats.
+   */
+  List<String> lookup(final String input) {
+    Set<String> matches = Sets.newLinkedHashSet();
+    for (String code : codes(input)) {
+      Integer g = code != null ? groups.get(code) : null;
+      if (g != null) {
+        for (int i = offsets[g]; i < offsets[g + 1]; ++i) {
+          matches.add(words[ids[i]]);
+        }
+      }
+    }
+    return ImmutableList.copyOf(matches);
+  }
+}
@@ -0,0 +1,70 @@
+package com.nlp.spelling;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent computations of the same key: the first caller computes, and callers arriving while it does
+ * wait for its result instead of computing it again.  A flight is forgotten once it lands, so this guards against
+ * thundering herds on cold keys without caching anything.
+ *
+ * Flights are futures in a concurrent map, so callers of different keys never contend on a lock.
+ *
+ * @param <K> Type of key.
+ * @param <V> Type of value.
+ * @author Kevin Crosby.
+ */
+final class SingleFlight<K, V> {
+  private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+  private final LongAdder computed = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Value of the key, computed by this caller or by a concurrent one.
+   *
+   * @param key      Key.
+   * @param function Computation of the value, run by at most one caller per key at a time.
+   * @return Value.
+   */
+  V get(final K key, final Function<? super K, ? extends V> function) {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> leader = flights.putIfAbsent(key, flight);
+    if (leader != null) {
+      coalesced.increment();
+      try {
+        return leader.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+    }
+    computed.increment();
+    try {
+      V value = function.apply(key);
+      flight.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      flights.remove(key, flight);
+    }
+  }
+
+  /**
+   * @return Number of values computed.
+   */
+  long getComputed() {
+    return computed.sum();
+  }
+
+  /**
+   * @return Number of calls that waited for a concurrent computation instead.
+   */
+  long getCoalesced() {
+    return coalesced.sum();
+  }
+}
@@ -1,32 +1,36 @@
 package com.nlp.spelling;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableTable;
-import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nlp.text.Tokens;
 
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static java.lang.Math.log;
 
@@ -38,89 +42,217 @@ import static java.lang.Math.log;
 public class SmartSpeller extends SpellCorrect {
   private static final Pattern PASS_THROUGH = Pattern.compile("[$\\d]");
 
-  private static final int EDIT_DISTANCE_MAX = 2;
+  private static final int EDIT_DISTANCE_MAX = SpellingIndex.EDIT_DISTANCE_MAX;
   private static final int DEFAULT_SENTENCE_COUNT = 12;
+  private static final double COST_SLACK = 1; // weighted cost beyond the best suggestion's, up to one unit edit
+  private static final int CACHE_SIZE = 1 << 16; // lookups cached per set of layers
 
   private static final int CORPUS_MULTIPLIER = 1;
-  private static final int TRAINING_MULTIPLIER = 100_000;
+  private static final int TRAINING_MULTIPLIER = 100_000; // corpus count of one learned use
   private static final int COMMON_MULTIPLIER = 1;
 
+  /**
+   * Name of the overlay of learned words new to the base and domain overlays.
+   */
+  public static final String LEARNED = "learned";
+
   private static SmartSpeller instance = null;
 
-  private final int sentenceCount;
+  /**
+   * How many suggestions a lookup returns, best first.
+   */
+  public enum Verbosity {
+    TOP, // the best suggestion only
+    CLOSEST, // all suggestions at the smallest edit distance
+    ALL // all suggestions within the maximum edit distance
+  }
 
-  private final Set<String> vocabulary;
+  private final int sentenceCount;
 
-  private final AtomicLongMap<String> words;
-  private final int maxlength;
-  private final Table<String, String, Integer> dictionary; // rows are suggestions, columns are dictionary words, int is edit distance
-  private final Comparator<Entry<String, Integer>> suggestionComparator;
+  private final ScheduledExecutorService rebuilder; // builds replacement indexes off the serving path
+  private volatile Layers layers; // replaced, never mutated, so each lookup sees one consistent set of indexes
+  private volatile Dawg lexicon = null; // words accepted as is, if any
+  private volatile WeightedEditDistance costs = null; // ranks suggestions, if any
+  private volatile boolean phonetic = false; // whether to add words sounding like the input
+  private final SingleFlight<Query, Map<String, Integer>> flights = new SingleFlight<>(); // lookups in progress
+  private volatile DecayedCounts learning = null; // words seen and accepted, if learning
+  private ScheduledFuture<?> folding = null; // of learned counts into their overlay, if learning
 
   private SmartSpeller() {
+    this(DictionarySource.resource(FREQUENCY_DICTIONARY));
+  }
+
+  /**
+   * Spell corrector over a custom frequency dictionary, e.g. a domain specific one.
+   *
+   * @param source Source of words and their counts.
+   */
+  public SmartSpeller(final DictionarySource source) {
     super();
     sentenceCount = DEFAULT_SENTENCE_COUNT;
+    rebuilder = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("speller-rebuild-%d").setDaemon(true).build());
+    layers = new Layers(index(source), ImmutableMap.of(), ImmutableSortedMap.of());
+    System.out.println("Finished initializing spell corrector");
+  }
 
+  private static SpellingIndex index(final DictionarySource source) {
     Stopwatch stopwatch = Stopwatch.createUnstarted();
     stopwatch.reset();
     stopwatch.start();
-    System.out.println("Loading words ...");
-    words = load(FREQUENCY_DICTIONARY);
-    stopwatch.stop();
-    vocabulary = words.asMap().keySet();
-    maxlength = maxlength(vocabulary);
-    System.out.printf("Loading %d words: %d milliseconds\n", vocabulary.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
-    System.out.println("Constructing edit dictionary ...");
-    stopwatch.reset();
-    stopwatch.start();
-    dictionary = dictionary(words);
+    System.out.println("Loading words and constructing edit dictionary ...");
+    SpellingIndex index = SpellingIndex.build(source); // overlapped
     stopwatch.stop();
-    System.out.printf("Constructing edit dictionary: %d milliseconds\n", stopwatch.elapsed(TimeUnit.MILLISECONDS));
-    suggestionComparator = suggestionComparator(words);
-    System.out.println("Finished initializing spell corrector");
+    System.out.printf("Loading %d words and constructing edit dictionary: %d milliseconds\n", index.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    return index;
   }
 
-  public static SmartSpeller getInstance() {
-    if (instance == null) {
-      synchronized (SmartSpeller.class) {
-        if (instance == null) {
-          instance = new SmartSpeller();
+  /**
+   * Base index plus named overlays, with the statistics of their union, and the lookups cached against them.  Words
+   * are numbered across the layers, base first, for snapshots of the cache.  Learned counts of words already indexed
+   * are kept apart, without an index of their own, and only add to the counts.
+   */
+  private static final class Layers {
+    private final SpellingIndex base;
+    private final ImmutableMap<String, SpellingIndex> overlays;
+    private final ImmutableSortedMap<String, Long> learned; // counts of words in base or domain overlays
+    private final List<SpellingIndex> indexes; // base first
+    private final int maxlength;
+    private final double logTotal; // log of smoothed corpus size, shared by all word probabilities
+    private final Comparator<Entry<String, Integer>> suggestionComparator;
+    private final long fingerprint;
+    private final Cache<Query, Map<String, Integer>> cache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    private Layers(final SpellingIndex base, final ImmutableMap<String, SpellingIndex> overlays,
+                   final ImmutableSortedMap<String, Long> learned) {
+      this.base = base;
+      this.overlays = overlays;
+      this.learned = learned;
+      indexes = ImmutableList.<SpellingIndex>builder().add(base).addAll(overlays.values()).build();
+      maxlength = indexes.stream().mapToInt(SpellingIndex::maxlength).max().orElse(0);
+      long total = indexes.stream().mapToLong(SpellingIndex::total).sum()
+          + learned.values().stream().mapToLong(Long::longValue).sum();
+      long vocabulary = base.size();
+      for (SpellingIndex overlay : overlays.values()) { // overlays are small, so count new words directly
+        vocabulary += overlay.vocabulary().stream().filter(word -> !contains(word, overlay)).count();
+      }
+      logTotal = log(total + vocabulary);
+      suggestionComparator = Entry.<String, Integer>comparingByValue()
+          .thenComparing(x -> count(x.getKey()), Comparator.reverseOrder());
+      Hasher hasher = Hashing.murmur3_128().newHasher().putLong(base.fingerprint());
+      overlays.forEach((name, overlay) -> hasher.putUnencodedChars(name).putChar('\0').putLong(overlay.fingerprint()));
+      learned.forEach((word, count) -> hasher.putUnencodedChars(word).putChar('\0').putLong(count)); // sorted
+      fingerprint = hasher.hash().asLong();
+    }
+
+    // word of an id across the layers
+    private String word(int id) {
+      for (SpellingIndex index : indexes) {
+        if (id < index.size()) {
+          return index.word(id);
         }
+        id -= index.size();
       }
+      throw new IndexOutOfBoundsException("No word " + id);
     }
-    return instance;
-  }
 
-  private int maxlength(Set<String> vocabulary) {
-    return vocabulary.stream()
-        .mapToInt(String::length)
-        .max()
-        .orElse(0);
-  }
+    // number of word ids across the layers
+    private int size() {
+      return indexes.stream().mapToInt(SpellingIndex::size).sum();
+    }
 
-  private Table<String, String, Integer> dictionary(AtomicLongMap<String> words) {
-    ImmutableTable.Builder<String, String, Integer> builder = ImmutableTable.builder();
-    for (String word : words.asMap().keySet()) {
-      if (word.length() == 1) {
-        builder.put("", word, 1);
-      } else {
-        for (int d = 1; d <= EDIT_DISTANCE_MAX; ++d) {
-          for (String edit : edits(word, d)) {
-            builder.put(edit, word, d);
-          }
+    // id of each word across the layers, from the first layer holding it
+    private Map<String, Integer> ids() {
+      Map<String, Integer> ids = Maps.newHashMapWithExpectedSize(size());
+      int offset = 0;
+      for (SpellingIndex index : indexes) {
+        for (int id = 0; id < index.size(); ++id) {
+          ids.putIfAbsent(index.word(id), offset + id);
         }
+        offset += index.size();
       }
+      return ids;
+    }
+
+    // whether word is in an index before the given one
+    private boolean contains(final String word, final SpellingIndex until) {
+      for (SpellingIndex index : indexes) {
+        if (index == until) {
+          return false;
+        }
+        if (index.contains(word)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // whether word is in the base or a domain overlay, i.e. not merely learned, lest learning feed on itself
+    private boolean known(final String word) {
+      for (SpellingIndex index : indexes) {
+        if (index != overlays.get(LEARNED) && index.contains(word)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private long count(final String word) {
+      long count = learned.getOrDefault(word, 0L);
+      for (SpellingIndex index : indexes) {
+        count += index.count(word);
+      }
+      return count;
     }
-    return builder.build();
   }
 
-  private Comparator<Entry<String, Integer>> suggestionComparator(AtomicLongMap<String> words) {
-    return Entry.<String, Integer>comparingByValue()
-        .thenComparing(x -> words.get(x.getKey()), Comparator.reverseOrder());
+  /**
+   * Key of a lookup: the same input, for the same verbosity, against the same layers.
+   */
+  private static final class Query {
+    private final Layers layers;
+    private final String input;
+    private final Verbosity verbosity;
+
+    private Query(final Layers layers, final String input, final Verbosity verbosity) {
+      this.layers = layers;
+      this.input = input;
+      this.verbosity = verbosity;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Query)) {
+        return false;
+      }
+      Query that = (Query) o;
+      return layers == that.layers && input.equals(that.input) && verbosity == that.verbosity;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * System.identityHashCode(layers) + input.hashCode()) + verbosity.hashCode();
+    }
+  }
+
+  public static SmartSpeller getInstance() {
+    if (instance == null) {
+      synchronized (SmartSpeller.class) {
+        if (instance == null) {
+          instance = new SmartSpeller();
+        }
+      }
+    }
+    return instance;
   }
 
   @Override
   protected double logProbability(String word) {
-    return log(words.get(word) + 1) - log(words.sum() + vocabulary.size());
+    Layers layers = this.layers;
+    return log(layers.count(word) + 1) - layers.logTotal;
   }
 
   @Override
@@ -147,180 +279,437 @@ public class SmartSpeller extends SpellCorrect {
 
   @Override
   public String correct(String word) {
-    return candidates(word).stream()
+    return suggestions(word, Verbosity.TOP).keySet().stream()
+        .findFirst()
+        .orElse(word);
+  }
+
+  @Override
+  public Budget.Result<String> correct(String word, Budget budget) {
+    if (PASS_THROUGH.matcher(word).find()) {
+      return new Budget.Result<>(word, false);
+    }
+    Layers layers = this.layers;
+    observe(layers, word);
+    String correction = lookup(layers, word, Verbosity.TOP, budget).keySet().stream()
         .findFirst()
         .orElse(word);
+    return new Budget.Result<>(correction, budget.isTruncated());
   }
 
   @Override
   public Set<String> candidates(String input) {
+    return suggestions(input, Verbosity.ALL).keySet();
+  }
+
+  /**
+   * Suggestions by ascending edit distance, then by descending word frequency (or by weighted cost first, if set).
+   * Fewer suggestions take less work: a lookup for the closest ones stops as soon as no closer one is possible.
+   *
+   * @param input     Word to correct.
+   * @param verbosity How many suggestions to return.
+   * @return Map of suggestion to edit distance, best first.
+   */
+  public Map<String, Integer> suggestions(final String input, final Verbosity verbosity) {
     if (PASS_THROUGH.matcher(input).find()) {
-      return ImmutableSet.of(input);
+      return ImmutableMap.of(input, 0);
     }
-    return lookup(input).keySet();
+    Layers layers = this.layers;
+    observe(layers, input);
+    return lookup(layers, input, verbosity, Budget.unlimited());
+  }
+
+  @Override
+  protected Collection<String> expand(Tokens tokens) {
+    return expand(tokens, Budget.unlimited());
   }
 
-  @SuppressWarnings("ConstantConditions")
   @Override
-  protected Collection<String> expand(String sentence) {
-    sentence = sentence.toLowerCase();
+  protected Collection<String> expand(Tokens tokens, Budget budget) {
+    Layers layers = this.layers;
     List<List<String>> candidates = Lists.newArrayList();
-    for (String token : parseWords(sentence)) {
-      LinkedListMultimap<Integer, String> multimap = Multimaps.invertFrom(Multimaps.forMap(lookup(token)), LinkedListMultimap.create());
-      for (int d = 0; d <= EDIT_DISTANCE_MAX; ++d) {
-        if (multimap.containsKey(d)) {
-          candidates.add(multimap.get(d));
-          break;
-        }
+    for (int i = 0; i < tokens.size(); ++i) {
+      String token = tokens.text(i);
+      observe(layers, token);
+      if (budget.isTruncated()) { // out of budget, so keep the rest as is
+        candidates.add(ImmutableList.of(token));
+        continue;
+      }
+      Map<String, Integer> closest = lookup(layers, token, Verbosity.CLOSEST, budget);
+      if (!closest.isEmpty()) {
+        candidates.add(ImmutableList.copyOf(closest.keySet()));
       }
     }
 
-    //build candidates
-    long sentenceCount = 1;
-    List<List<String>> choices = candidates.stream()
-        .map(c -> Lists.newArrayList(c.get(0)))
-        .collect(Collectors.toList());
-    long[] horizonCounts = candidates.stream()
-        .map(c -> c.size() > 1 ? c.get(1) : "")
-        .mapToLong(words::get)
-        .toArray();
-    Queue<Integer> pq = new PriorityQueue<>(Comparator.<Integer>comparingLong(i -> horizonCounts[i]).reversed());
-    IntStream.range(0, candidates.size()).forEach(pq::add);
-    while (sentenceCount < this.sentenceCount) {
-      int argmax = pq.remove(); // will add back later after horizon counts are updated
-      if (horizonCounts[argmax] == 0) {
-        break;
-      }
-      List<String> candidate = candidates.get(argmax);
-      List<String> choice = choices.get(argmax);
-      int index = choice.size();
-      choice.add(candidate.get(index++));
-      horizonCounts[argmax] = index < candidate.size() ? words.get(candidate.get(index)) : 0;
-      pq.add(argmax); // refreshes priority queue
-      sentenceCount = choices.stream()
-          .mapToLong(List::size)
-          .reduce(1L, Math::multiplyExact);
-    }
-
-    return cartesian(choices);
-  }
-
-  //inexpensive and language independent: only deletes, no transposes + replaces + inserts
-  private static Set<String> edits(String word, int d) {
-    Set<String> deletes = Sets.newLinkedHashSet();
-    int n = word.length();
-    if (n > d) {
-      int limit = (1 << n);
-      for (int mask = (1 << (n - d)) - 1; mask < limit; mask = hakmem175(mask)) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < n; ++i) {
-          if ((mask & (1 << i)) != 0) {
-            sb.append(word.charAt(i));
+    return expand(candidates, layers::count, sentenceCount, budget);
+  }
+
+  // cached lookups cost nothing; concurrent unbudgeted lookups of the same input wait for one computation and cache
+  // it, while budgeted ones each keep to their own, as they may stop short
+  private Map<String, Integer> lookup(final Layers layers, final String input, final Verbosity verbosity,
+                                      final Budget budget) {
+    Query query = new Query(layers, input, verbosity);
+    Map<String, Integer> suggestions = layers.cache.getIfPresent(query);
+    if (suggestions != null) {
+      return suggestions;
+    }
+    if (budget.isLimited()) {
+      return search(layers, input, verbosity, budget);
+    }
+    return flights.get(query, key -> {
+      Map<String, Integer> found = search(layers, input, verbosity, budget);
+      layers.cache.put(key, found);
+      return found;
+    });
+  }
+
+  // suggestions of all layers, by ascending edit distance, then by descending word frequency
+  private Map<String, Integer> search(final Layers layers, final String input, final Verbosity verbosity,
+                                      final Budget budget) {
+    //valid words need no correction
+    Dawg lexicon = this.lexicon;
+    if (lexicon != null && lexicon.contains(input)) {
+      return ImmutableMap.of(input, 0);
+    }
+    //save some time
+    if (input.length() - EDIT_DISTANCE_MAX > layers.maxlength) {
+      return ImmutableMap.of();
+    }
+    boolean closest = verbosity != Verbosity.ALL;
+    Map<String, Integer> suggestions = layers.base.lookup(input, closest, budget);
+    for (SpellingIndex overlay : layers.overlays.values()) {
+      overlay.lookup(input, closest, budget).forEach((suggestion, distance) -> suggestions.merge(suggestion, distance, Math::min));
+    }
+    Set<String> soundalikes = ImmutableSet.of();
+    if (phonetic) { // ranked with the most distant suggestions, however many edits away
+      soundalikes = Sets.newHashSet();
+      for (SpellingIndex index : layers.indexes) {
+        for (String soundalike : index.soundsLike(input)) {
+          if (suggestions.putIfAbsent(soundalike, EDIT_DISTANCE_MAX) == null) {
+            soundalikes.add(soundalike);
           }
         }
-        deletes.add(sb.toString());
       }
     }
-    return deletes;
+
+    // return original word if no other corrections offered ...
+    if (suggestions.isEmpty()) {
+      return ImmutableMap.of(input, 0);
+    }
+
+    WeightedEditDistance costs = this.costs;
+    if (costs != null) {
+      return rank(layers, input, suggestions, soundalikes, costs, verbosity);
+    }
+
+    //sort by ascending edit distance, then by descending word frequency
+    return select(suggestions, layers.suggestionComparator, verbosity);
   }
 
-  // compute the lexicographically next bit permutation
-  private static int hakmem175(int v) {
-    int t = v | (v - 1);
-    return (t + 1) | ((~t & -~t) - 1) >> (Integer.numberOfTrailingZeros(v) + 1);
+  // best first: only the best one, in a single pass; only those at the smallest edit distance; or all of them
+  private static Map<String, Integer> select(final Map<String, Integer> suggestions,
+                                             final Comparator<Entry<String, Integer>> comparator,
+                                             final Verbosity verbosity) {
+    switch (verbosity) {
+      case TOP:
+        return suggestions.entrySet().stream()
+            .min(comparator) // first of equals, as a stable sort would
+            .map(x -> ImmutableMap.of(x.getKey(), x.getValue()))
+            .orElse(ImmutableMap.of());
+      case CLOSEST:
+        int distance = suggestions.values().stream().mapToInt(Integer::intValue).min().orElse(0);
+        return suggestions.entrySet().stream()
+            .filter(x -> x.getValue() == distance)
+            .sorted(comparator)
+            .collect(ImmutableMap.toImmutableMap(Entry::getKey, Entry::getValue));
+      default:
+        return suggestions.entrySet().stream()
+            .sorted(comparator)
+            .collect(ImmutableMap.toImmutableMap(Entry::getKey, Entry::getValue));
+    }
   }
 
-  private Map<String, Integer> lookup(String input) {
-    //save some time
-    if (input.length() - EDIT_DISTANCE_MAX > maxlength) {
-      return ImmutableMap.of();
+  // sort by ascending edit distance, then by ascending weighted cost, then by descending word frequency,
+  // dropping suggestions that cost much more than the best one
+  private static Map<String, Integer> rank(final Layers layers, final String input,
+                                           final Map<String, Integer> suggestions, final Set<String> soundalikes,
+                                           final WeightedEditDistance costs, final Verbosity verbosity) {
+    Map<String, Double> weighted = Maps.newHashMapWithExpectedSize(suggestions.size());
+    double best = Double.POSITIVE_INFINITY;
+    for (String suggestion : suggestions.keySet()) {
+      double cost = soundalikes.contains(suggestion) ? EDIT_DISTANCE_MAX : costs.distance(input, suggestion, EDIT_DISTANCE_MAX);
+      weighted.put(suggestion, cost);
+      best = Math.min(best, cost);
+    }
+    if (best == Double.POSITIVE_INFINITY) { // all too costly, so fall back to unit costs
+      return select(suggestions, layers.suggestionComparator, verbosity);
     }
-    Queue<String> candidates = Queues.newArrayDeque();
-    Set<String> hashset1 = Sets.newHashSet();
+    double limit = best + COST_SLACK;
+    return select(Maps.filterKeys(suggestions, x -> weighted.get(x) <= limit),
+        Entry.<String, Integer>comparingByValue()
+            .thenComparing(x -> weighted.get(x.getKey()))
+            .thenComparing(x -> layers.count(x.getKey()), Comparator.reverseOrder()),
+        verbosity);
+  }
 
-    Map<String, Integer> suggestions = Maps.newHashMap();
-    Set<String> hashset2 = Sets.newHashSet();
+  /**
+   * Add or replace a named overlay, e.g. product names or customer vocabulary, without rebuilding the base index.
+   * Counts of words in several layers add.
+   *
+   * @param name   Name of overlay.
+   * @param source Source of overlay words and their counts.
+   */
+  public void putOverlay(final String name, final DictionarySource source) {
+    putOverlay(name, new SpellingIndex(load(source))); // built before taking the lock
+  }
 
-    //add original term
-    candidates.add(input);
+  private synchronized void putOverlay(final String name, final SpellingIndex overlay) {
+    Map<String, SpellingIndex> overlays = Maps.newLinkedHashMap(layers.overlays);
+    overlays.put(name, overlay);
+    layers = new Layers(layers.base, ImmutableMap.copyOf(overlays), layers.learned);
+  }
 
-    while (!candidates.isEmpty()) {
-      String candidate = candidates.remove();
+  /**
+   * Remove a named overlay.  Removing the {@link #LEARNED} overlay also forgets learned counts of indexed words.
+   *
+   * @param name Name of overlay.
+   * @return True if the overlay was present.
+   */
+  public synchronized boolean removeOverlay(final String name) {
+    boolean learned = name.equals(LEARNED) && !layers.learned.isEmpty();
+    if (!layers.overlays.containsKey(name) && !learned) {
+      return false;
+    }
+    layers = new Layers(layers.base, ImmutableMap.copyOf(Maps.filterKeys(layers.overlays, key -> !key.equals(name))),
+        learned ? ImmutableSortedMap.of() : layers.learned);
+    return true;
+  }
 
-      //if count>0 then candidate entry is correct dictionary term, not only delete item
-      if (dictionary.containsColumn(candidate) && hashset2.add(candidate)) { // i.e. if count>0, then candidate is a column of dictionary
-        int distance = input.length() - candidate.length();
-        suggestions.put(candidate, distance);
-      }
+  /**
+   * Accept words of a lexicon as is, without consulting the delete index, e.g. {@link Dawg#twl06()}.
+   *
+   * @param lexicon Valid words, or null to always consult the index.
+   */
+  public synchronized void setLexicon(final Dawg lexicon) {
+    this.lexicon = lexicon;
+    renew();
+  }
 
-      //read candidate entry from dictionary
-      //iterate through suggestions (to other correct dictionary items) of delete item and add them to suggestion list
-      for (String suggestion : dictionary.row(candidate).keySet()) { // i.e. dictionary words only
-        //save some time
-        //skipping double items early: different deletes of the input term can lead to the same suggestion
-        if (hashset2.add(suggestion)) {
-          //True Damerau-Levenshtein Edit Distance: adjust distance, if both distances>0
-          //We allow simultaneous edits (deletes) of editDistanceMax on on both the dictionary and the input term.
-          //For replaces and adjacent transposes the resulting edit distance stays <= editDistanceMax.
-          //For inserts and deletes the resulting edit distance might exceed editDistanceMax.
-          //To prevent suggestions of a higher edit distance, we need to calculate the resulting edit distance, if there are simultaneous edits on both sides.
-          //Example: (bank==bnak and bank==bink, but bank!=kanb and bank!=xban and bank!=baxn for editDistanceMaxe=1)
-          //Two deletes on each side of a pair makes them all equal, but the first two pairs have edit distance=1, the others edit distance=2.
-          int distance = 0;
-          if (!suggestion.equals(input)) {
-            if (suggestion.length() == candidate.length()) {
-              distance = input.length() - candidate.length();
-            } else if (input.length() == candidate.length()) {
-              distance = suggestion.length() - candidate.length();
-            } else {
-              //common prefixes and suffixes are ignored, because this speeds up the Damerau-Levenshtein-Distance calculation without changing it.
-              int ii = 0;
-              int jj = 0;
-              while (ii < suggestion.length() && ii < input.length() && suggestion.charAt(ii) == input.charAt(ii)) {
-                ii++;
-              }
-              while (jj < suggestion.length() - ii && jj < input.length() - ii && suggestion.charAt(suggestion.length() - jj - 1) == input.charAt(input.length() - jj - 1)) {
-                jj++;
-              }
-              if (ii > 0 || jj > 0) {
-                distance = editDistance(suggestion.substring(ii, suggestion.length() - jj), input.substring(ii, input.length() - jj)); // FIXED by Kevin
-              } else {
-                distance = editDistance(suggestion, input);
-              }
-            }
-          }
+  /**
+   * Rank suggestions by weighted edit cost within each edit distance, e.g. {@link WeightedEditDistance#getInstance()},
+   * and drop suggestions costing more than one unit edit beyond the best one.
+   *
+   * @param costs Edit costs, or null to rank by edit distance and frequency only.
+   */
+  public synchronized void setEditCosts(final WeightedEditDistance costs) {
+    this.costs = costs;
+    renew();
+  }
 
-          if (distance <= EDIT_DISTANCE_MAX) {
-            suggestions.put(suggestion, distance);
-          }
-        }
-      }//end foreach
-
-      //add edits
-      //derive edits (deletes) from candidate (input) and add them to candidates list
-      //this is a recursive process until the maximum edit distance has been reached
-      if (input.length() - candidate.length() < EDIT_DISTANCE_MAX) {
-        //noinspection ConstantConditions
-        Set<String> edits = hashset2.contains(candidate)
-            ? Maps.filterValues(dictionary.column(candidate), d -> d == 1).keySet()
-            : edits(candidate, 1);
-        for (String delete : edits) {
-          if (hashset1.add(delete)) {
-            candidates.add(delete);
-          }
-        }
+  /**
+   * Add words sounding like the input (same Double Metaphone code), ranked with the most distant suggestions, to find
+   * phonetic misspellings more than the maximum edit distance away, e.g. "nite" for "night".
+   * Each index builds its phonetic index on its first phonetic lookup, so spell correctors not using this pay nothing.
+   *
+   * @param phonetic True to add words sounding alike.
+   */
+  public synchronized void setPhonetic(final boolean phonetic) {
+    this.phonetic = phonetic;
+    renew();
+  }
+
+  // same layers with a fresh cache, after a setting changed: lookups in progress under the old setting finish into the
+  // old cache, which is dropped with the old layers, while later ones see the new setting, written first
+  private void renew() {
+    layers = new Layers(layers.base, layers.overlays, layers.learned);
+  }
+
+  /**
+   * @return Number of lookups computed, rather than coalesced.
+   */
+  public long getComputedLookups() {
+    return flights.getComputed();
+  }
+
+  /**
+   * @return Number of lookups that waited for an identical concurrent lookup instead of computing their own.
+   */
+  public long getCoalescedLookups() {
+    return flights.getCoalesced();
+  }
+
+  // of the layers and of the contents of the settings changing suggestions, taken with the lock held, as settings are
+  // changed, so that they match the layers whose cache holds lookups under them
+  private long fingerprint(final Layers layers) {
+    Hasher hasher = Hashing.murmur3_128().newHasher().putLong(layers.fingerprint);
+    hasher.putBoolean(lexicon != null);
+    if (lexicon != null) {
+      hasher.putLong(lexicon.fingerprint());
+    }
+    hasher.putBoolean(costs != null);
+    if (costs != null) {
+      hasher.putLong(costs.fingerprint());
+    }
+    return hasher.putBoolean(phonetic).hash().asLong();
+  }
+
+  /**
+   * Write the cached lookups, i.e. the hot working set, to a compact snapshot file, e.g. at shutdown or periodically,
+   * so that a new spell corrector over the same dictionaries can start warm with {@link #loadSnapshot(Path)}.  A
+   * previous snapshot is replaced atomically.
+   *
+   * @param path Snapshot file.
+   * @return Number of lookups written.
+   */
+  public int saveSnapshot(final Path path) {
+    Layers layers;
+    long fingerprint;
+    synchronized (this) {
+      layers = this.layers;
+      fingerprint = fingerprint(layers);
+    }
+    Map<String, Integer> ids = layers.ids();
+    return LookupSnapshot.write(consumer -> layers.cache.asMap().forEach((query, suggestions) ->
+            consumer.accept(query.input, query.verbosity, suggestions)),
+        fingerprint, word -> ids.getOrDefault(word, -1), path);
+  }
+
+  /**
+   * Warm the lookup cache from a snapshot file written by {@link #saveSnapshot(Path)}.  The snapshot is stamped with
+   * the fingerprint of the dictionaries, overlays and settings it was written with, e.g. lexicon, edit costs and
+   * phonetic suggestions, and is ignored if stale, so it never changes a suggestion.  So is a truncated, corrupt or
+   * foreign file.
+   *
+   * @param path Snapshot file.
+   * @return Number of lookups loaded, 0 if the snapshot is stale.
+   */
+  public int loadSnapshot(final Path path) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Layers layers;
+    long fingerprint;
+    synchronized (this) {
+      layers = this.layers;
+      fingerprint = fingerprint(layers);
+    }
+    int loaded = LookupSnapshot.read(path, fingerprint, layers.size(), layers::word, (input, verbosity, suggestions) ->
+        layers.cache.put(new Query(layers, input, verbosity), suggestions));
+    stopwatch.stop();
+    if (loaded < 0) {
+      System.out.println("Ignoring stale or invalid lookup snapshot " + path);
+      return 0;
+    }
+    System.out.printf("Loading %d cached lookups: %d milliseconds\n", loaded, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    return loaded;
+  }
+
+  /**
+   * Learn from production use: count dictionary words seen in corrected text and corrections accepted, with counts
+   * halving every half life, and periodically fold them into the ranking frequencies as the {@link #LEARNED} overlay.
+   * One learned use counts as much as {@value #TRAINING_MULTIPLIER} uses in the corpus.
+   *
+   * Counting takes a lock on one of several stripes, never one shared with lookups, and folding swaps in new counts,
+   * so readers never wait.  Words already in the base or a domain overlay only add to their counts; only accepted words
+   * new to all of them are indexed, off the serving path, as the overlay.  Each fold starts a fresh lookup cache, as
+   * rankings may have changed.
+   *
+   * @param halfLife Time for a learned count to halve.
+   * @param period   Time between folds.
+   * @param unit     Unit of half life and period.
+   */
+  public synchronized void startLearning(final long halfLife, final long period, final TimeUnit unit) {
+    stopLearning();
+    learning = new DecayedCounts(halfLife, unit);
+    folding = rebuilder.scheduleAtFixedRate(this::fold, period, period, unit);
+  }
+
+  /**
+   * Stop counting and folding; the last fold, if any, stays in place until its overlay is removed.
+   */
+  public synchronized void stopLearning() {
+    if (folding != null) {
+      folding.cancel(false);
+      folding = null;
+    }
+    learning = null;
+  }
+
+  /**
+   * Count a correction accepted by the user, if learning, e.g. one of the suggestions, or a word of their own.
+   *
+   * @param correction Correction accepted.
+   */
+  public void accept(final String correction) {
+    DecayedCounts learning = this.learning;
+    if (learning != null) {
+      learning.increment(correction.toLowerCase().trim());
+    }
+  }
+
+  // count a dictionary word seen, if learning, on every lookup path
+  private void observe(final Layers layers, final String word) {
+    DecayedCounts learning = this.learning;
+    if (learning != null && layers.known(word)) {
+      learning.increment(word);
+    }
+  }
+
+  /**
+   * Fold the learned counts, decayed as of now, into the ranking frequencies, forgetting words decayed to nothing:
+   * counts of indexed words as they are, and new words as the {@link #LEARNED} overlay.  Done periodically while
+   * learning, or on demand.
+   */
+  public void fold() {
+    DecayedCounts learning = this.learning;
+    if (learning == null) {
+      return;
+    }
+    Layers layers = this.layers;
+    ImmutableSortedMap.Builder<String, Long> known = ImmutableSortedMap.naturalOrder();
+    AtomicLongMap<String> novel = AtomicLongMap.create();
+    learning.snapshot(1.0 / TRAINING_MULTIPLIER).forEach((word, count) -> {
+      long scaled = Math.max(1, Math.round(count * TRAINING_MULTIPLIER));
+      if (layers.known(word)) {
+        known.put(word, scaled);
+      } else {
+        novel.put(word, scaled);
       }
-    }//end while
+    });
+    SpellingIndex overlay = novel.isEmpty() ? null : new SpellingIndex(novel); // built before taking the lock
+    learn(learning, known.build(), overlay);
+  }
 
-    // return original word if no other corrections offered ...
-    if (suggestions.isEmpty()) {
-      return ImmutableMap.of(input, 0);
+  // swap in learned counts and overlay of new words, if any, unless learning stopped or restarted meanwhile
+  private synchronized void learn(final DecayedCounts learning, final ImmutableSortedMap<String, Long> known,
+                                  final SpellingIndex overlay) {
+    if (learning != this.learning) {
+      return;
+    }
+    Map<String, SpellingIndex> overlays =
+        Maps.newLinkedHashMap(Maps.filterKeys(layers.overlays, key -> !key.equals(LEARNED)));
+    if (overlay != null) {
+      overlays.put(LEARNED, overlay);
     }
+    layers = new Layers(layers.base, ImmutableMap.copyOf(overlays), known);
+  }
 
-    //sort by ascending edit distance, then by descending word frequency
-    return suggestions.entrySet().stream()
-        .sorted(suggestionComparator)
-        .collect(ImmutableMap.toImmutableMap(Entry::getKey, Entry::getValue));
+  public Set<String> overlays() {
+    return layers.overlays.keySet();
+  }
+
+  /**
+   * Rebuild the base index in the background and swap it in atomically, keeping the overlays.  Lookups continue
+   * against the current index until the swap, and never see a partially built one.
+   *
+   * @param source Source of base words and their counts.
+   * @return Future completed once the new base index is serving.
+   */
+  public CompletableFuture<Void> reload(final DictionarySource source) {
+    return CompletableFuture.supplyAsync(() -> index(source), rebuilder)
+        .thenAccept(this::swap);
+  }
+
+  private synchronized void swap(final SpellingIndex base) {
+    layers = new Layers(base, layers.overlays, layers.learned);
   }
 
   public static void main(String[] args) {
@@ -2,24 +2,24 @@ package com.nlp.spelling;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AtomicLongMap;
+import com.nlp.math.LogSumExp;
+import com.nlp.text.Tokens;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static com.nlp.math.LogUtils.logSumExp;
 import static java.lang.Math.exp;
 
 /**
@@ -27,6 +27,7 @@ import static java.lang.Math.exp;
  */
 public abstract class SpellCorrect {
   protected static final String FREQUENCY_DICTIONARY = "/com/nlp/spelling/frequency_dictionary_en_82_765.txt";
+  protected static final String TWL06 = "/com/nlp/spelling/TWL06.txt";
 
   protected static final Joiner JOINER = Joiner.on(" ");
 
@@ -49,13 +50,24 @@ public abstract class SpellCorrect {
 
   protected abstract double sentenceLogProbability(String sentence);
 
-  @SuppressWarnings("ConstantConditions")
   private Map<String, Double> sentenceProbabilities(Collection<String> sentences) {
-    ImmutableMap.Builder<String, Double> builder = ImmutableMap.<String, Double>builder()
+    List<String> keys = ImmutableSet.copyOf(sentences).asList();
+    int n = keys.size();
+    double[] probabilities = new double[n];
+    LogSumExp denominator = new LogSumExp(); // normalize as sentences are scored
+    for (int i = 0; i < n; ++i) {
+      probabilities[i] = sentenceLogProbability(keys.get(i));
+      denominator.add(probabilities[i]);
+    }
+    double logSumExp = denominator.value();
+    for (int i = 0; i < n; ++i) {
+      probabilities[i] = exp(probabilities[i] - logSumExp);
+    }
+    ImmutableMap.Builder<String, Double> builder = ImmutableMap.<String, Double>builderWithExpectedSize(n)
         .orderEntriesByValue(Comparator.reverseOrder());
-    Map<String, Double> map = Maps.toMap(sentences, this::sentenceLogProbability);
-    final double denominator = logSumExp(map.values());
-    builder.putAll(Maps.transformValues(map, logProbability -> exp(logProbability - denominator)));
+    for (int i = 0; i < n; ++i) {
+      builder.put(keys.get(i), probabilities[i]);
+    }
     return builder.build();
   }
 
@@ -67,13 +79,56 @@ public abstract class SpellCorrect {
     return sentenceProbabilities(expand(sentence));
   }
 
+  public Map<String, Double> process(Tokens tokens) {
+    return sentenceProbabilities(expand(tokens));
+  }
+
+  /**
+   * Correct a word within a budget.  Correctors that cannot stop early ignore the budget.
+   *
+   * @param word   Word to correct.
+   * @param budget Deadline and/or operations allowed.
+   * @return Best correction found, truncated if the budget ran out first.
+   */
+  public Budget.Result<String> correct(String word, Budget budget) {
+    return new Budget.Result<>(correct(word), false);
+  }
+
+  /**
+   * Score corrections of a sentence within a budget, e.g. a per utterance latency budget.  Tokens left unexamined when
+   * the budget runs out are kept as they are.
+   *
+   * @param sentence Sentence to correct.
+   * @param budget   Deadline and/or operations allowed.
+   * @return Probabilities of the corrected sentences found, truncated if the budget ran out first.
+   */
+  public Budget.Result<Map<String, Double>> process(String sentence, Budget budget) {
+    Map<String, Double> probabilities = sentenceProbabilities(expand(Tokens.of(sentence.toLowerCase()), budget));
+    return new Budget.Result<>(probabilities, budget.isTruncated());
+  }
+
+  // correct each token in place, for use as a pipeline stage
+  public void correct(Tokens tokens) {
+    for (int i = 0; i < tokens.size(); ++i) {
+      tokens.set(i, correct(tokens.text(i)));
+    }
+  }
+
   // expand sentence into all possible corrections
   protected Collection<String> expand(String sentence) {
-    sentence = sentence.toLowerCase();
+    return expand(Tokens.of(sentence.toLowerCase()));
+  }
+
+  // expand lowercase tokens into possible corrections, within a budget if the corrector can stop early
+  protected Collection<String> expand(Tokens tokens, Budget budget) {
+    return expand(tokens);
+  }
+
+  // expand lowercase tokens into all possible corrections
+  protected Collection<String> expand(Tokens tokens) {
     List<List<String>> candidates = Lists.newArrayList();
-    StringTokenizer tokenizer = new StringTokenizer(sentence);
-    while (tokenizer.hasMoreTokens()) {
-      String token = tokenizer.nextToken();
+    for (int i = 0; i < tokens.size(); ++i) {
+      String token = tokens.text(i);
       List<String> candidate = Lists.newArrayList(candidates(token));
       // TODO add thresholds based on 1) number of candidates per word, 2) probability, and/or 3) number of paths??
       candidates.add(candidate);
@@ -81,6 +136,59 @@ public abstract class SpellCorrect {
     return cartesian(candidates);
   }
 
+  /**
+   * Expand candidate lists into at most about sentenceCount sentences, by adding alternatives one at a time to the
+   * token whose next alternative is most frequent.
+   *
+   * @param candidates    Candidates of each token, best first.
+   * @param count         Frequency of a word.
+   * @param sentenceCount Bound on number of sentences.
+   * @return Sentences.
+   */
+  protected static List<String> expand(List<List<String>> candidates, ToLongFunction<String> count, int sentenceCount) {
+    return expand(candidates, count, sentenceCount, Budget.unlimited());
+  }
+
+  /**
+   * Expand candidate lists as above, one operation of the budget per alternative added.
+   *
+   * @param candidates    Candidates of each token, best first.
+   * @param count         Frequency of a word.
+   * @param sentenceCount Bound on number of sentences.
+   * @param budget        Budget, marked truncated if expansion stopped short.
+   * @return Sentences.
+   */
+  protected static List<String> expand(List<List<String>> candidates, ToLongFunction<String> count, int sentenceCount,
+                                       Budget budget) {
+    long sentences = 1;
+    List<List<String>> choices = candidates.stream()
+        .map(c -> Lists.newArrayList(c.get(0)))
+        .collect(Collectors.toList());
+    long[] horizonCounts = candidates.stream()
+        .map(c -> c.size() > 1 ? c.get(1) : "")
+        .mapToLong(count)
+        .toArray();
+    Queue<Integer> pq = new PriorityQueue<>(Comparator.<Integer>comparingLong(i -> horizonCounts[i]).reversed());
+    IntStream.range(0, candidates.size()).forEach(pq::add);
+    while (sentences < sentenceCount) {
+      int argmax = pq.remove(); // will add back later after horizon counts are updated
+      if (horizonCounts[argmax] == 0 || !budget.spend()) {
+        break;
+      }
+      List<String> candidate = candidates.get(argmax);
+      List<String> choice = choices.get(argmax);
+      int index = choice.size();
+      choice.add(candidate.get(index++));
+      horizonCounts[argmax] = index < candidate.size() ? count.applyAsLong(candidate.get(index)) : 0;
+      pq.add(argmax); // refreshes priority queue
+      sentences = choices.stream()
+          .mapToLong(List::size)
+          .reduce(1L, Math::multiplyExact);
+    }
+
+    return cartesian(choices);
+  }
+
   // cartesian product of string concatenations
   protected static List<String> cartesian(List<List<String>> candidates) {
     return Lists.cartesianProduct(candidates).stream()
@@ -93,27 +201,22 @@ public abstract class SpellCorrect {
   }
 
   protected static AtomicLongMap<String> load(String resource) {
+    return load(DictionarySource.resource(resource));
+  }
+
+  protected static AtomicLongMap<String> load(DictionarySource source) {
     AtomicLongMap<String> counter = AtomicLongMap.create();
-    load(resource, counter);
+    normalized(source).read(counter::addAndGet);
     return counter;
   }
 
-  private static void load(String resource, AtomicLongMap<String> counter) {
-    InputStream inputStream = SpellCorrect.class.getResourceAsStream(resource);
-    try {
-      BufferedReader br = new BufferedReader(new InputStreamReader(inputStream));
-      String line;
-      while ((line = br.readLine()) != null) {
-        Scanner scanner = new Scanner(line).useDelimiter("\\s");
-        String string = scanner.next().toLowerCase().trim();
-        if (!isInitial(string)) {
-          long frequency = scanner.hasNextLong() ? scanner.nextLong() : 1;
-          counter.addAndGet(string, frequency);
-        }
+  // lower case words, without initials, as they are read
+  protected static DictionarySource normalized(DictionarySource source) {
+    return consumer -> source.read((word, frequency) -> {
+      String string = word.toLowerCase().trim();
+      if (!isInitial(string)) {
+        consumer.accept(string, frequency);
       }
-      br.close();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    });
   }
 }
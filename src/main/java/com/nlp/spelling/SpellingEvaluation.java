@@ -0,0 +1,448 @@
+package com.nlp.spelling;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nlp.score.ConfusionAccumulator;
+import com.nlp.score.Scores;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluation of a spelling corrector against (misspelled, correct) pairs.
+ *
+ * Pairs are corrected in parallel, either word by word ({@link SpellCorrect#correct(String)}) or as sentences
+ * ({@link SpellCorrect#process(String)}).  Answers are tallied in a confusion matrix, and the report gives top-1 and
+ * top-k accuracy, mean and 99th percentile latency per token, and throughput.  Accuracy is deterministic; timings are
+ * not.
+ *
+ * Pair files hold one tab separated pair per line, misspelled first; blank lines and lines starting with "#" are
+ * skipped.  A small fixture, derived from the frequency dictionary by {@link #fixture(int, long)}, is bundled.
+ *
+ * @author Kevin Crosby.
+ */
+public final class SpellingEvaluation {
+  public static final String FIXTURE = "/com/nlp/spelling/misspellings.txt";
+
+  private static final int FIXTURE_SIZE = 1000;
+  private static final long FIXTURE_SEED = 20_180_826L;
+  private static final int FIXTURE_VOCABULARY = 20_000; // most frequent words to draw from
+  private static final int FIXTURE_MIN_LENGTH = 4;
+  private static final double FIXTURE_DOUBLE_EDITS = 0.2; // fraction of pairs two edits apart
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+  private static final int SENTENCE_LENGTH = 4; // words per sentence, when fixture words are grouped
+  private static final String STANDARD_STREAM = "-"; // stdin, as for BatchProcessor
+  private static final String BUNDLED = "--fixture"; // the bundled fixture
+  private static final String REGENERATE = "--regenerate-fixture";
+  private static final int DEFAULT_K = 5;
+  private static final int CHUNK_SIZE = 1 << 6; // pairs per task
+  private static final char TAB = '\t';
+  private static final String COMMENT = "#";
+  private static final Splitter SPLITTER = Splitter.on(' ').omitEmptyStrings();
+
+  /**
+   * What is corrected.
+   */
+  public enum Mode {
+    WORD,
+    SENTENCE
+  }
+
+  /**
+   * Misspelled input and its correct form.
+   */
+  public static final class Pair {
+    private final String misspelled;
+    private final String correct;
+
+    public Pair(final String misspelled, final String correct) {
+      this.misspelled = misspelled;
+      this.correct = correct;
+    }
+
+    public String misspelled() {
+      return misspelled;
+    }
+
+    public String correct() {
+      return correct;
+    }
+
+    @Override
+    public String toString() {
+      return misspelled + TAB + correct;
+    }
+  }
+
+  /**
+   * Results of one evaluation run.
+   */
+  public static final class Report {
+    private final Scores scores;
+    private final int pairs;
+    private final int k;
+    private final long top1;
+    private final long topK;
+    private final long tokens;
+    private final double meanNanos; // per token
+    private final long p99Nanos; // per token
+    private final long elapsedNanos; // wall clock
+
+    private Report(final Scores scores, final int pairs, final int k, final long top1, final long topK,
+                   final long tokens, final double meanNanos, final long p99Nanos, final long elapsedNanos) {
+      this.scores = scores;
+      this.pairs = pairs;
+      this.k = k;
+      this.top1 = top1;
+      this.topK = topK;
+      this.tokens = tokens;
+      this.meanNanos = meanNanos;
+      this.p99Nanos = p99Nanos;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Scores of top answers, by correct form.
+     *
+     * @return Scores.
+     */
+    public Scores getScores() {
+      return scores;
+    }
+
+    public double getTop1Accuracy() {
+      return pairs == 0 ? 0 : (double) top1 / pairs;
+    }
+
+    public double getTopKAccuracy() {
+      return pairs == 0 ? 0 : (double) topK / pairs;
+    }
+
+    public int getK() {
+      return k;
+    }
+
+    public double getMeanLatency(final TimeUnit unit) {
+      return meanNanos / unit.toNanos(1);
+    }
+
+    public double getP99Latency(final TimeUnit unit) {
+      return (double) p99Nanos / unit.toNanos(1);
+    }
+
+    /**
+     * Tokens corrected per second of wall clock time, over all threads.
+     *
+     * @return Throughput.
+     */
+    public double getThroughput() {
+      return elapsedNanos == 0 ? 0 : tokens * 1e9 / elapsedNanos;
+    }
+
+    public void write(final PrintWriter out) {
+      out.format("%-16s %d\n", "pairs", pairs);
+      out.format("%-16s %d\n", "tokens", tokens);
+      out.format("%-16s %.4f\n", "top-1 accuracy", getTop1Accuracy());
+      out.format("%-16s %.4f\n", String.format("top-%d accuracy", k), getTopKAccuracy());
+      out.format("%-16s %.3f ms/token\n", "mean latency", getMeanLatency(TimeUnit.NANOSECONDS) / 1e6);
+      out.format("%-16s %.3f ms/token\n", "p99 latency", getP99Latency(TimeUnit.NANOSECONDS) / 1e6);
+      out.format("%-16s %.1f tokens/s\n", "throughput", getThroughput());
+      out.flush();
+    }
+
+    public void show() {
+      write(new PrintWriter(System.out));
+    }
+  }
+
+  private final SpellCorrect speller;
+  private final Mode mode;
+  private final int k;
+  private final int threads;
+
+  public SpellingEvaluation(final SpellCorrect speller, final Mode mode, final int k, final int threads) {
+    if (k < 1 || threads < 1) {
+      throw new IllegalArgumentException(String.format("k (%d) and threads (%d) must be positive", k, threads));
+    }
+    this.speller = speller;
+    this.mode = mode;
+    this.k = k;
+    this.threads = threads;
+  }
+
+  /**
+   * Correct all pairs and score the answers.
+   *
+   * @param pairs Misspelled inputs and their correct forms.
+   * @return Report.
+   */
+  public Report evaluate(final List<Pair> pairs) {
+    int n = pairs.size();
+    ConfusionAccumulator accumulator = new ConfusionAccumulator();
+    int[] ranks = new int[n]; // 0 if correct form is not among the top k
+    int[] tokens = new int[n];
+    long[] nanos = new long[n]; // per token
+    ExecutorService pool = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("evaluate-%d").setDaemon(true).build());
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int start = 0; start < n; start += CHUNK_SIZE) {
+        int from = start;
+        int to = Math.min(n, start + CHUNK_SIZE);
+        futures.add(pool.submit(() -> {
+          for (int i = from; i < to; ++i) {
+            evaluate(pairs.get(i), i, accumulator, ranks, tokens, nanos);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+    stopwatch.stop();
+
+    long top1 = Arrays.stream(ranks).filter(r -> r == 1).count();
+    long topK = Arrays.stream(ranks).filter(r -> r >= 1).count();
+    long tokenTotal = Arrays.stream(tokens).asLongStream().sum();
+    double mean = n == 0 ? 0 : Arrays.stream(nanos).average().orElse(0);
+    long[] sorted = nanos.clone();
+    Arrays.sort(sorted);
+    long p99 = n == 0 ? 0 : sorted[(int) Math.ceil(0.99 * n) - 1];
+    return new Report(accumulator.snapshot(), n, k, top1, topK, tokenTotal, mean, p99, stopwatch.elapsed(TimeUnit.NANOSECONDS));
+  }
+
+  // correct one pair, recording its rank, token count and latency per token
+  private void evaluate(final Pair pair, final int i, final ConfusionAccumulator accumulator,
+                        final int[] ranks, final int[] tokens, final long[] nanos) {
+    String gold = pair.correct().toLowerCase();
+    List<String> answers;
+    long start = System.nanoTime();
+    if (mode == Mode.WORD) {
+      String answer = speller.correct(pair.misspelled().toLowerCase());
+      long elapsed = System.nanoTime() - start;
+      answers = k == 1 ? ImmutableList.of(answer) : top(answer, speller.candidates(pair.misspelled().toLowerCase()));
+      tokens[i] = 1;
+      nanos[i] = elapsed;
+      accumulator.record(gold, answer);
+    } else {
+      Set<String> sentences = speller.process(pair.misspelled()).keySet();
+      long elapsed = System.nanoTime() - start;
+      answers = ImmutableList.copyOf(Iterables.limit(sentences, k));
+      String answer = answers.isEmpty() ? pair.misspelled().toLowerCase() : answers.get(0);
+      tokens[i] = Math.max(1, SPLITTER.splitToList(pair.misspelled()).size());
+      nanos[i] = elapsed / tokens[i];
+      record(accumulator, gold, answer);
+    }
+    int rank = answers.indexOf(gold);
+    ranks[i] = rank >= 0 && rank < k ? rank + 1 : 0;
+  }
+
+  // top k answers, led by the corrected answer
+  private List<String> top(final String answer, final Collection<String> candidates) {
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    builder.add(answer);
+    builder.addAll(Iterables.limit(candidates, k));
+    return ImmutableList.copyOf(Iterables.limit(builder.build(), k));
+  }
+
+  // score sentences word by word when they align, otherwise as whole sentences
+  private static void record(final ConfusionAccumulator accumulator, final String gold, final String answer) {
+    List<String> golds = SPLITTER.splitToList(gold);
+    List<String> answers = SPLITTER.splitToList(answer);
+    if (golds.size() != answers.size()) {
+      accumulator.record(gold, answer);
+      return;
+    }
+    accumulator.record(golds, answers); // a sentence at a time
+  }
+
+  /**
+   * Load pairs from a file.
+   *
+   * @param file Pair file.
+   * @return Pairs.
+   */
+  public static List<Pair> load(final String file) {
+    try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+      return read(reader);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Load pairs from a stream, e.g. stdin.
+   *
+   * @param inputStream Stream of pairs, in UTF-8.
+   * @return Pairs.
+   */
+  public static List<Pair> load(final InputStream inputStream) {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+      return read(reader);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Load the bundled fixture.
+   *
+   * @return Pairs.
+   */
+  public static List<Pair> fixture() {
+    return load(SpellingEvaluation.class.getResourceAsStream(FIXTURE));
+  }
+
+  private static List<Pair> read(final BufferedReader reader) throws IOException {
+    List<Pair> pairs = Lists.newArrayList();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.trim().isEmpty() || line.startsWith(COMMENT)) {
+        continue;
+      }
+      int tab = line.indexOf(TAB);
+      if (tab < 0) {
+        throw new IOException("Missing tab in pair: " + line);
+      }
+      pairs.add(new Pair(line.substring(0, tab).trim(), line.substring(tab + 1).trim()));
+    }
+    return pairs;
+  }
+
+  /**
+   * Group word pairs into sentence pairs, e.g. to evaluate sentence correction on word fixtures.
+   *
+   * @param pairs  Word pairs.
+   * @param length Words per sentence.
+   * @return Sentence pairs.
+   */
+  public static List<Pair> sentences(final List<Pair> pairs, final int length) {
+    return Lists.partition(pairs, length).stream()
+        .map(group -> new Pair(
+            group.stream().map(Pair::misspelled).collect(Collectors.joining(" ")),
+            group.stream().map(Pair::correct).collect(Collectors.joining(" "))))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Derive misspellings from the frequency dictionary, deterministically for a given seed.
+   *
+   * Words are drawn from the most frequent dictionary words, and each is misspelled by one (or sometimes two) random
+   * deletes, inserts, substitutions or transpositions, such that the misspelling is not itself a dictionary word.
+   *
+   * @param size Number of pairs.
+   * @param seed Random seed.
+   * @return Pairs.
+   */
+  public static List<Pair> fixture(final int size, final long seed) {
+    AtomicLongMap<String> counts = SpellCorrect.load(SpellCorrect.FREQUENCY_DICTIONARY);
+    Set<String> vocabulary = counts.asMap().keySet();
+    List<String> words = counts.asMap().entrySet().stream()
+        .sorted(Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Entry.comparingByKey()))
+        .limit(FIXTURE_VOCABULARY)
+        .map(Entry::getKey)
+        .filter(word -> word.length() >= FIXTURE_MIN_LENGTH && word.chars().allMatch(c -> c >= 'a' && c <= 'z'))
+        .collect(Collectors.toList());
+    SplittableRandom random = new SplittableRandom(seed);
+    List<Pair> pairs = Lists.newArrayListWithCapacity(size);
+    while (pairs.size() < size) {
+      String word = words.get(random.nextInt(words.size()));
+      int edits = random.nextDouble() < FIXTURE_DOUBLE_EDITS ? 2 : 1;
+      String misspelled = word;
+      for (int e = 0; e < edits; ++e) {
+        misspelled = edit(misspelled, random);
+      }
+      if (!vocabulary.contains(misspelled)) {
+        pairs.add(new Pair(misspelled, word));
+      }
+    }
+    return pairs;
+  }
+
+  // one random delete, insert, substitution or transposition
+  private static String edit(final String word, final SplittableRandom random) {
+    StringBuilder sb = new StringBuilder(word);
+    int n = word.length();
+    char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+    switch (random.nextInt(4)) {
+      case 0:
+        sb.deleteCharAt(random.nextInt(n));
+        break;
+      case 1:
+        sb.insert(random.nextInt(n + 1), c);
+        break;
+      case 2:
+        sb.setCharAt(random.nextInt(n), c);
+        break;
+      default:
+        int i = random.nextInt(n - 1);
+        sb.setCharAt(i, word.charAt(i + 1));
+        sb.setCharAt(i + 1, word.charAt(i));
+        break;
+    }
+    return sb.toString();
+  }
+
+  public static void main(String[] args) {
+    if (args.length > 0 && args[0].equals(REGENERATE)) {
+      // regenerate the bundled fixture
+      PrintWriter out = new PrintWriter(System.out);
+      out.format("%s misspellings of frequent dictionary words, seed %d\n", COMMENT, FIXTURE_SEED);
+      fixture(FIXTURE_SIZE, FIXTURE_SEED).forEach(out::println);
+      out.flush();
+      return;
+    }
+    if (args.length < 1) {
+      System.err.format("Usage: SpellingEvaluation <pairs|-|%s> [word|sentence] [k] [threads]\n", BUNDLED);
+      System.err.format("       SpellingEvaluation %s > misspellings.txt\n", REGENERATE);
+      System.exit(1);
+    }
+    Mode mode = args.length > 1 ? Mode.valueOf(args[1].toUpperCase()) : Mode.WORD;
+    int k = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_K;
+    int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    boolean bundled = args[0].equals(BUNDLED);
+    List<Pair> pairs = bundled ? fixture() : STANDARD_STREAM.equals(args[0]) ? load(System.in) : load(args[0]);
+    if (mode == Mode.SENTENCE && bundled) {
+      pairs = sentences(pairs, SENTENCE_LENGTH);
+    }
+
+    SpellingEvaluation evaluation = new SpellingEvaluation(SmartSpeller.getInstance(), mode, k, threads);
+    Report report = evaluation.evaluate(pairs);
+    report.getScores().showConfusions(20);
+    report.show();
+  }
+}
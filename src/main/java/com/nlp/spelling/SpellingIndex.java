@@ -0,0 +1,276 @@
+package com.nlp.spelling;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AtomicLongMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable symmetric delete index over one frequency dictionary.
+ *
+ * A spell corrector may consult several indexes, e.g. a large base dictionary and small domain overlays, and merge
+ * their suggestions.
+ *
+ * @author Kevin Crosby.
+ */
+final class SpellingIndex {
+  static final int EDIT_DISTANCE_MAX = 2;
+
+  private final AtomicLongMap<String> words;
+  private final Set<String> vocabulary;
+  private final int maxlength;
+  private final long total;
+  private final DeleteIndex deletes; // also numbers the words, from 0 until size
+  private final long fingerprint;
+  private final Supplier<PhoneticIndex> phonetic; // built on first use, as phonetic lookup is optional
+
+  SpellingIndex(final AtomicLongMap<String> words) {
+    this(words, deletes(words));
+  }
+
+  private SpellingIndex(final AtomicLongMap<String> words, final DeleteIndex deletes) {
+    this.words = words;
+    vocabulary = words.asMap().keySet();
+    maxlength = maxlength(vocabulary);
+    total = words.sum();
+    this.deletes = deletes;
+    phonetic = Suppliers.memoize(() -> new PhoneticIndex(vocabulary));
+    fingerprint = fingerprint(words, deletes);
+  }
+
+  // of every word and count, in id order, so word ids mean the same in any index with the same fingerprint
+  private static long fingerprint(final AtomicLongMap<String> words, final DeleteIndex deletes) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (int id = 0; id < words.size(); ++id) {
+      String word = deletes.word(id);
+      hasher.putUnencodedChars(word).putChar('\0').putLong(words.get(word));
+    }
+    return hasher.hash().asLong();
+  }
+
+  private static DeleteIndex deletes(final AtomicLongMap<String> words) {
+    DeleteIndex.Builder builder = new DeleteIndex.Builder();
+    words.asMap().keySet().forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Read a dictionary and index it at once: deletes of the words read so far are derived in parallel while the rest
+   * are still being read.
+   *
+   * @param source Source of words and their counts.
+   * @return Index of the normalized words.
+   */
+  static SpellingIndex build(final DictionarySource source) {
+    AtomicLongMap<String> words = AtomicLongMap.create();
+    DeleteIndex.Builder builder = new DeleteIndex.Builder();
+    SpellCorrect.normalized(source).read((word, count) -> {
+      if (!words.containsKey(word)) {
+        builder.add(word);
+      }
+      words.addAndGet(word, count);
+    });
+    return new SpellingIndex(words, builder.build());
+  }
+
+  private int maxlength(Set<String> vocabulary) {
+    return vocabulary.stream()
+        .mapToInt(String::length)
+        .max()
+        .orElse(0);
+  }
+
+  long count(String word) {
+    return words.get(word);
+  }
+
+  boolean contains(String word) {
+    return vocabulary.contains(word);
+  }
+
+  Set<String> vocabulary() {
+    return vocabulary;
+  }
+
+  int size() {
+    return vocabulary.size();
+  }
+
+  int maxlength() {
+    return maxlength;
+  }
+
+  long total() {
+    return total;
+  }
+
+  /**
+   * @param id Word id, from 0 until size.
+   * @return Dictionary word.
+   */
+  String word(int id) {
+    return deletes.word(id);
+  }
+
+  long fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Dictionary words with the same primary or alternate Double Metaphone code as the input.
+   *
+   * @param input Word to match.
+   * @return Words sounding alike.
+   */
+  List<String> soundsLike(String input) {
+    return phonetic.get().lookup(input);
+  }
+
+  /**
+   * Dictionary words within the maximum edit distance of the input, unordered.
+   *
+   * @param input Word to correct.
+   * @return Mutable map of suggestion to edit distance, empty if none.
+   */
+  Map<String, Integer> lookup(String input) {
+    return lookup(input, false);
+  }
+
+  /**
+   * Dictionary words within the maximum edit distance of the input, unordered, or only the closest of them.
+   *
+   * A word d edits away is derived from a delete of the input with at most d characters deleted, so once the deletes
+   * with d characters deleted are done, every suggestion up to d edits away has been found, and if any has, there is
+   * no closer one left to find.
+   *
+   * @param input   Word to correct.
+   * @param closest True for only the suggestions at the smallest edit distance, stopping as soon as no closer one is
+   *                possible.
+   * @return Mutable map of suggestion to edit distance, empty if none.
+   */
+  Map<String, Integer> lookup(String input, boolean closest) {
+    return lookup(input, closest, Budget.unlimited());
+  }
+
+  /**
+   * Dictionary words within the maximum edit distance of the input, unordered, or only the closest of them, found
+   * within a budget.  Each index probe and each edit distance computed costs one operation.
+   *
+   * @param input   Word to correct.
+   * @param closest True for only the suggestions at the smallest edit distance.
+   * @param budget  Budget, marked truncated if the lookup stopped short.
+   * @return Mutable map of suggestion to edit distance, found so far, empty if none.
+   */
+  Map<String, Integer> lookup(String input, boolean closest, Budget budget) {
+    Map<String, Integer> suggestions = Maps.newHashMap();
+    //save some time
+    if (input.length() - EDIT_DISTANCE_MAX > maxlength) {
+      return suggestions;
+    }
+    Search search = new Search(input, suggestions, closest, budget);
+    Deletes enumerator = new Deletes();
+    //original term, then its distinct deletes, one edit distance at a time until the maximum has been reached
+    for (int d = 0; d <= EDIT_DISTANCE_MAX; ++d) {
+      if (closest && search.best < d) {
+        break;
+      }
+      if ((d == 0 || input.length() > d || input.length() == d && search.letter) && !enumerator.forEach(input, d, search)) {
+        break; // out of budget
+      }
+    }
+    if (closest) {
+      suggestions.values().removeIf(distance -> distance > search.best);
+    }
+    return suggestions;
+  }
+
+  /**
+   * Visitor of the deletes of one input, collecting the dictionary words they were derived from.
+   */
+  private final class Search implements Deletes.Visitor {
+    private final String input;
+    private final Map<String, Integer> suggestions;
+    private final Set<String> seen = Sets.newHashSet();
+    private final boolean closest;
+    private final Budget budget;
+    private boolean letter = false; // whether some single letter candidate is a dictionary word, whose delete is ""
+    private int best = Integer.MAX_VALUE; // smallest edit distance so far
+
+    private Search(final String input, final Map<String, Integer> suggestions, final boolean closest,
+                   final Budget budget) {
+      this.input = input;
+      this.suggestions = suggestions;
+      this.closest = closest;
+      this.budget = budget;
+    }
+
+    @Override
+    public boolean visit(final Deletes candidate) {
+      if (!budget.spend()) {
+        return false;
+      }
+      int hash = candidate.hash();
+      DeleteIndex.Shard shard = deletes.shard(hash);
+      int key = shard.find(candidate, hash);
+      if (key < 0) {
+        return true;
+      }
+      //read candidate entry from dictionary
+      //iterate through suggestions (to other correct dictionary items) of delete item and add them to suggestion list
+      for (int i = shard.from(key); i < shard.to(key); ++i) {
+        String suggestion = deletes.word(shard.id(i));
+        letter |= suggestion.length() == 1 && candidate.length() == 1; // i.e. the candidate itself
+        //save some time
+        //skipping double items early: different deletes of the input term can lead to the same suggestion
+        if (seen.add(suggestion)) {
+          //True Damerau-Levenshtein Edit Distance: adjust distance, if both distances>0
+          //We allow simultaneous edits (deletes) of editDistanceMax on on both the dictionary and the input term.
+          //For replaces and adjacent transposes the resulting edit distance stays <= editDistanceMax.
+          //For inserts and deletes the resulting edit distance might exceed editDistanceMax.
+          //To prevent suggestions of a higher edit distance, we need to calculate the resulting edit distance, if there are simultaneous edits on both sides.
+          //Example: (bank==bnak and bank==bink, but bank!=kanb and bank!=xban and bank!=baxn for editDistanceMaxe=1)
+          //Two deletes on each side of a pair makes them all equal, but the first two pairs have edit distance=1, the others edit distance=2.
+          int distance = 0;
+          if (!suggestion.equals(input)) {
+            if (suggestion.length() == candidate.length()) { // i.e. the candidate itself is a dictionary word
+              distance = input.length() - candidate.length();
+            } else if (input.length() == candidate.length()) {
+              distance = suggestion.length() - candidate.length();
+            } else {
+              if (!budget.spend()) {
+                return false;
+              }
+              //common prefixes and suffixes are ignored, because this speeds up the Damerau-Levenshtein-Distance calculation without changing it.
+              int ii = 0;
+              int jj = 0;
+              while (ii < suggestion.length() && ii < input.length() && suggestion.charAt(ii) == input.charAt(ii)) {
+                ii++;
+              }
+              while (jj < suggestion.length() - ii && jj < input.length() - ii && suggestion.charAt(suggestion.length() - jj - 1) == input.charAt(input.length() - jj - 1)) {
+                jj++;
+              }
+              if (ii > 0 || jj > 0) {
+                distance = SpellCorrect.editDistance(suggestion.substring(ii, suggestion.length() - jj), input.substring(ii, input.length() - jj)); // FIXED by Kevin
+              } else {
+                distance = SpellCorrect.editDistance(suggestion, input);
+              }
+            }
+          }
+
+          if (distance <= (closest ? Math.min(best, EDIT_DISTANCE_MAX) : EDIT_DISTANCE_MAX)) {
+            suggestions.put(suggestion, distance);
+            best = Math.min(best, distance);
+          }
+        }
+      }//end foreach
+      return true;
+    }
+  }
+}
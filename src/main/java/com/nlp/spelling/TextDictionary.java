@@ -0,0 +1,104 @@
+package com.nlp.spelling;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+
+/**
+ * Text dictionary, one "word [count]" entry per line.
+ *
+ * Entries are parsed as by {@link Scanner#next()} and {@link Scanner#hasNextLong()} with whitespace delimiters, i.e.
+ * a missing or malformed count counts 1, while counts such as "-5", "+5" or "1,000" parse as before.  Lines of a word,
+ * one delimiter and plain decimal digits, by far the most common, are split by hand, as a {@link Scanner} compiles
+ * and runs regular expressions for every line; any other line is left to a {@link Scanner}.
+ *
+ * @author Kevin Crosby.
+ */
+final class TextDictionary implements DictionarySource {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int MAX_DIGITS = 18; // longest decimal that cannot overflow a long
+  private static final Pattern DELIMITER = Pattern.compile("\\s");
+
+  /**
+   * Opener of the underlying stream, called once per read.
+   */
+  @FunctionalInterface
+  interface Opener {
+    InputStream open() throws IOException;
+  }
+
+  private final Opener opener;
+
+  TextDictionary(final Opener opener) {
+    this.opener = opener;
+  }
+
+  @Override
+  public void read(final EntryConsumer consumer) {
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(opener.open(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        int n = line.length();
+        int end = delimiter(line, 0, n);
+        if (end == 0) { // empty, or led by a delimiter
+          scan(line, consumer);
+          continue;
+        }
+        int countStart = Math.min(end + 1, n);
+        int countEnd = delimiter(line, countStart, n);
+        long count = count(line, countStart, countEnd);
+        if (count < 0) {
+          scan(line, consumer);
+        } else {
+          consumer.accept(line.substring(0, end), count);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // index of first delimiter from i, as matched by \s, or n
+  private static int delimiter(final String line, int i, final int n) {
+    while (i < n) {
+      char c = line.charAt(i);
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+        break;
+      }
+      ++i;
+    }
+    return i;
+  }
+
+  // count of plain decimal digits, 1 if absent, or -1 if anything else, left to a scanner
+  private static long count(final String line, final int start, final int end) {
+    if (start == end) {
+      return 1;
+    }
+    if (end - start > MAX_DIGITS) { // may overflow
+      return -1;
+    }
+    long count = 0;
+    for (int i = start; i < end; ++i) {
+      int digit = line.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      count = count * 10 + digit;
+    }
+    return count;
+  }
+
+  // entry of any other line, skipping blank ones
+  private static void scan(final String line, final EntryConsumer consumer) {
+    Scanner scanner = new Scanner(line).useDelimiter(DELIMITER);
+    if (scanner.hasNext()) {
+      String word = scanner.next();
+      consumer.accept(word, scanner.hasNextLong() ? scanner.nextLong() : 1);
+    }
+  }
+}
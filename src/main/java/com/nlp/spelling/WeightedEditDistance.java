@@ -0,0 +1,250 @@
+package com.nlp.spelling;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Weighted Damerau-Levenshtein (optimal string alignment) distance, with per character substitution, insertion and
+ * deletion costs and a transposition cost.
+ *
+ * Costs are read from a compact text file, one operation per line:
+ * <pre>
+ * default 1.0          any operation not listed
+ * transpose 0.75       adjacent transposition
+ * substitute a s 0.5   either way; the cheapest line wins
+ * insert e 0.8         character inserted into the input, i.e. missing from it
+ * delete e 0.8         character deleted from the input, i.e. extra in it
+ * </pre>
+ * The bundled table prices QWERTY neighbours and common phonetic confusions below other substitutions.  Only ASCII
+ * characters may be listed; others cost the default.
+ *
+ * @author Kevin Crosby.
+ */
+public final class WeightedEditDistance {
+  public static final String EDIT_COSTS = "/com/nlp/spelling/edit_costs.txt";
+
+  private static final int ASCII = 128;
+  private static final String COMMENT = "#";
+
+  private static WeightedEditDistance instance = null;
+
+  private final double defaultCost;
+  private final double transposition;
+  private final double[] substitutions; // ASCII x ASCII, row major
+  private final double[] insertions;
+  private final double[] deletions;
+  private final long fingerprint;
+
+  private WeightedEditDistance(final BufferedReader reader) throws IOException {
+    double[] defaults = {1, Double.NaN}; // default, transposition
+    double[] substitutions = new double[ASCII * ASCII];
+    double[] insertions = new double[ASCII];
+    double[] deletions = new double[ASCII];
+    Arrays.fill(substitutions, Double.NaN); // unset until defaults are known
+    Arrays.fill(insertions, Double.NaN);
+    Arrays.fill(deletions, Double.NaN);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] fields = line.trim().split("\\s+");
+      if (fields[0].isEmpty() || fields[0].startsWith(COMMENT)) {
+        continue;
+      }
+      double cost = Double.parseDouble(fields[fields.length - 1]);
+      if (cost < 0) {
+        throw new IOException("Negative cost: " + line);
+      }
+      switch (fields[0]) {
+        case "default":
+          defaults[0] = cost;
+          break;
+        case "transpose":
+          defaults[1] = cost;
+          break;
+        case "substitute":
+          int a = ascii(fields[1], line);
+          int b = ascii(fields[2], line);
+          substitutions[a * ASCII + b] = min(substitutions[a * ASCII + b], cost);
+          substitutions[b * ASCII + a] = substitutions[a * ASCII + b];
+          break;
+        case "insert":
+          insertions[ascii(fields[1], line)] = cost;
+          break;
+        case "delete":
+          deletions[ascii(fields[1], line)] = cost;
+          break;
+        default:
+          throw new IOException("Unknown edit: " + line);
+      }
+    }
+    defaultCost = defaults[0];
+    transposition = Double.isNaN(defaults[1]) ? defaultCost : defaults[1];
+    for (int i = 0; i < ASCII; ++i) {
+      for (int j = 0; j < ASCII; ++j) {
+        double cost = substitutions[i * ASCII + j];
+        substitutions[i * ASCII + j] = i == j ? 0 : Double.isNaN(cost) ? defaultCost : cost;
+      }
+      insertions[i] = Double.isNaN(insertions[i]) ? defaultCost : insertions[i];
+      deletions[i] = Double.isNaN(deletions[i]) ? defaultCost : deletions[i];
+    }
+    this.substitutions = substitutions;
+    this.insertions = insertions;
+    this.deletions = deletions;
+    fingerprint = fingerprint(defaultCost, transposition, substitutions, insertions, deletions);
+  }
+
+  // of every cost, so tables read from different files with the same costs match
+  private static long fingerprint(final double defaultCost, final double transposition, final double[] substitutions,
+                                  final double[] insertions, final double[] deletions) {
+    Hasher hasher = Hashing.murmur3_128().newHasher().putDouble(defaultCost).putDouble(transposition);
+    for (double cost : substitutions) {
+      hasher.putDouble(cost);
+    }
+    for (int c = 0; c < ASCII; ++c) {
+      hasher.putDouble(insertions[c]).putDouble(deletions[c]);
+    }
+    return hasher.hash().asLong();
+  }
+
+  private static int ascii(final String field, final String line) throws IOException {
+    if (field.length() != 1 || field.charAt(0) >= ASCII) {
+      throw new IOException("Not a single ASCII character: " + line);
+    }
+    return field.charAt(0);
+  }
+
+  private static double min(final double a, final double b) {
+    return Double.isNaN(a) ? b : Math.min(a, b);
+  }
+
+  /**
+   * Bundled keyboard and phonetic costs.
+   *
+   * @return Shared weighted edit distance.
+   */
+  public static WeightedEditDistance getInstance() {
+    if (instance == null) {
+      synchronized (WeightedEditDistance.class) {
+        if (instance == null) {
+          instance = load(EDIT_COSTS);
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Load costs from the class path.
+   *
+   * @param resource Absolute resource name.
+   * @return Weighted edit distance.
+   */
+  public static WeightedEditDistance load(final String resource) {
+    InputStream inputStream = WeightedEditDistance.class.getResourceAsStream(resource);
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+      return new WeightedEditDistance(reader);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Load costs from a file.
+   *
+   * @param path Cost file.
+   * @return Weighted edit distance.
+   */
+  public static WeightedEditDistance load(final Path path) {
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      return new WeightedEditDistance(reader);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public double substitution(final char a, final char b) {
+    if (a == b) {
+      return 0;
+    }
+    return a < ASCII && b < ASCII ? substitutions[a * ASCII + b] : defaultCost;
+  }
+
+  public double insertion(final char c) {
+    return c < ASCII ? insertions[c] : defaultCost;
+  }
+
+  public double deletion(final char c) {
+    return c < ASCII ? deletions[c] : defaultCost;
+  }
+
+  public double transposition() {
+    return transposition;
+  }
+
+  long fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Cost of editing the input into the word.
+   *
+   * @param input Input, e.g. a misspelling.
+   * @param word  Word, e.g. a dictionary word.
+   * @return Cheapest total cost.
+   */
+  public double distance(final CharSequence input, final CharSequence word) {
+    return distance(input, word, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Cost of editing the input into the word, giving up once it must exceed a bound.
+   *
+   * @param input Input, e.g. a misspelling.
+   * @param word  Word, e.g. a dictionary word.
+   * @param max   Largest cost of interest.
+   * @return Cheapest total cost, or positive infinity if more than max.
+   */
+  public double distance(final CharSequence input, final CharSequence word, final double max) {
+    int n = word.length();
+    double[] antepenultimate = new double[n + 1]; // row i - 2
+    double[] penultimate = new double[n + 1]; // row i - 1
+    double[] ultimate = new double[n + 1]; // row i
+    for (int j = 1; j <= n; ++j) {
+      penultimate[j] = penultimate[j - 1] + insertion(word.charAt(j - 1));
+    }
+    double previousMin = 0; // of row i - 1
+    for (int i = 1; i <= input.length(); ++i) {
+      char x = input.charAt(i - 1);
+      ultimate[0] = penultimate[0] + deletion(x);
+      double rowMin = ultimate[0];
+      for (int j = 1; j <= n; ++j) {
+        char y = word.charAt(j - 1);
+        double cost = Math.min(penultimate[j - 1] + substitution(x, y),
+            Math.min(penultimate[j] + deletion(x), ultimate[j - 1] + insertion(y)));
+        if (i > 1 && j > 1 && x == word.charAt(j - 2) && input.charAt(i - 2) == y && x != y) {
+          cost = Math.min(cost, antepenultimate[j - 2] + transposition);
+        }
+        ultimate[j] = cost;
+        rowMin = Math.min(rowMin, cost);
+      }
+      if (rowMin > max && previousMin > max) {
+        return Double.POSITIVE_INFINITY; // later rows build on these two rows only, and costs only grow
+      }
+      previousMin = rowMin;
+      double[] recycled = antepenultimate;
+      antepenultimate = penultimate;
+      penultimate = ultimate;
+      ultimate = recycled;
+    }
+    double distance = penultimate[n];
+    return distance <= max ? distance : Double.POSITIVE_INFINITY;
+  }
+}
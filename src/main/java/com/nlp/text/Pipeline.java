@@ -0,0 +1,89 @@
+package com.nlp.text;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Chain of stages sharing one token stream, e.g.
+ * <pre>
+ *   Pipeline pipeline = Pipeline.builder()
+ *       .lowerCase()
+ *       .add(Normalizer::collapse)
+ *       .add(Numerics::verbalize)
+ *       .add(SmartSpeller.getInstance()::correct)
+ *       .build();
+ * </pre>
+ * The utterance is tokenized once and joined once, regardless of the number of stages.
+ *
+ * @author Kevin Crosby.
+ */
+public final class Pipeline implements Stage {
+  private final boolean lowerCase;
+  private final List<Stage> stages;
+
+  private Pipeline(final Builder builder) {
+    lowerCase = builder.lowerCase;
+    stages = builder.stages.build();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Tokenize text the way this pipeline expects.
+   *
+   * @param text Text to tokenize.
+   * @return Token stream over text.
+   */
+  public Tokens tokenize(final String text) {
+    return Tokens.of(lowerCase ? text.toLowerCase() : text);
+  }
+
+  @Override
+  public void apply(final Tokens tokens) {
+    for (Stage stage : stages) {
+      stage.apply(tokens);
+    }
+  }
+
+  /**
+   * Run all stages over text.
+   *
+   * @param text Text to process.
+   * @return Processed text.
+   */
+  public String process(final String text) {
+    Tokens tokens = tokenize(text);
+    apply(tokens);
+    return tokens.toString();
+  }
+
+  public static final class Builder {
+    private boolean lowerCase = false;
+    private final ImmutableList.Builder<Stage> stages = ImmutableList.builder();
+
+    private Builder() {
+    }
+
+    /**
+     * Lowercase the whole utterance once before tokenizing.
+     *
+     * @return This builder.
+     */
+    public Builder lowerCase() {
+      lowerCase = true;
+      return this;
+    }
+
+    public Builder add(final Stage stage) {
+      stages.add(stage);
+      return this;
+    }
+
+    public Pipeline build() {
+      return new Pipeline(this);
+    }
+  }
+}
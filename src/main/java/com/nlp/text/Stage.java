@@ -0,0 +1,11 @@
+package com.nlp.text;
+
+/**
+ * Step of a text pipeline that annotates or rewrites tokens in place.
+ *
+ * @author Kevin Crosby.
+ */
+@FunctionalInterface
+public interface Stage {
+  void apply(Tokens tokens);
+}
@@ -0,0 +1,240 @@
+package com.nlp.text;
+
+import com.google.common.collect.Lists;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Whitespace delimited token stream over a shared character buffer.
+ *
+ * Tokens are kept as offsets into the source until a stage rewrites them, so chained stages share a single
+ * tokenization and a single final join.  Token text is materialized at most once and is then reused by later stages.
+ *
+ * @author Kevin Crosby.
+ */
+public final class Tokens {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final CharSequence source;
+
+  private int size;
+  private int[] starts;
+  private int[] ends;
+  private String[] texts; // rewritten or materialized text, null if token is still a span of the source
+
+  private Tokens(final CharSequence source, final int capacity) {
+    this.source = source;
+    size = 0;
+    starts = new int[capacity];
+    ends = new int[capacity];
+    texts = new String[capacity];
+  }
+
+  /**
+   * Tokenize on whitespace without copying.
+   *
+   * @param source Characters to tokenize.
+   * @return Token stream with offsets into source.
+   */
+  public static Tokens of(final CharSequence source) {
+    Tokens tokens = new Tokens(source, DEFAULT_CAPACITY);
+    int n = source.length();
+    int i = 0;
+    while (i < n) {
+      while (i < n && Character.isWhitespace(source.charAt(i))) {
+        ++i;
+      }
+      int start = i;
+      while (i < n && !Character.isWhitespace(source.charAt(i))) {
+        ++i;
+      }
+      if (i > start) {
+        tokens.ensureCapacity(tokens.size + 1);
+        tokens.starts[tokens.size] = start;
+        tokens.ends[tokens.size] = i;
+        tokens.size++;
+      }
+    }
+    return tokens;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * View of token without copying.
+   *
+   * @param i Index of token.
+   * @return Characters of token.
+   */
+  public CharSequence get(final int i) {
+    checkIndex(i);
+    return texts[i] != null ? texts[i] : CharBuffer.wrap(source, starts[i], ends[i]);
+  }
+
+  public int length(final int i) {
+    checkIndex(i);
+    return texts[i] != null ? texts[i].length() : ends[i] - starts[i];
+  }
+
+  public char charAt(final int i, final int j) {
+    checkIndex(i);
+    return texts[i] != null ? texts[i].charAt(j) : source.charAt(starts[i] + j);
+  }
+
+  /**
+   * Text of token, materialized once and cached for later stages.
+   *
+   * @param i Index of token.
+   * @return Text of token.
+   */
+  public String text(final int i) {
+    checkIndex(i);
+    if (texts[i] == null) {
+      texts[i] = source.subSequence(starts[i], ends[i]).toString();
+    }
+    return texts[i];
+  }
+
+  /**
+   * Compare two tokens without materializing them.
+   *
+   * @param i Index of first token.
+   * @param j Index of second token.
+   * @return True if both tokens have the same characters.
+   */
+  public boolean contentEquals(final int i, final int j) {
+    int n = length(i);
+    if (n != length(j)) {
+      return false;
+    }
+    for (int k = 0; k < n; ++k) {
+      if (charAt(i, k) != charAt(j, k)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Rewrite token in place.
+   *
+   * @param i    Index of token.
+   * @param text Replacement text.
+   */
+  public void set(final int i, final String text) {
+    checkIndex(i);
+    texts[i] = text;
+  }
+
+  /**
+   * Replace one token by zero or more tokens.
+   *
+   * @param i     Index of token.
+   * @param words Replacement tokens.
+   * @return Number of tokens now occupying the position of the replaced token.
+   */
+  public int replace(final int i, final List<String> words) {
+    checkIndex(i);
+    int m = words.size();
+    if (m == 1) {
+      texts[i] = words.get(0);
+      return 1;
+    }
+    ensureCapacity(size + m - 1);
+    int tail = size - i - 1;
+    System.arraycopy(starts, i + 1, starts, i + m, tail);
+    System.arraycopy(ends, i + 1, ends, i + m, tail);
+    System.arraycopy(texts, i + 1, texts, i + m, tail);
+    for (int k = 0; k < m; ++k) {
+      texts[i + k] = words.get(k);
+    }
+    size += m - 1;
+    if (m == 0) {
+      texts[size] = null; // release vacated slot
+    }
+    return m;
+  }
+
+  /**
+   * Move token to an earlier position, for stages that compact the stream in place.
+   *
+   * @param from Index of token to move.
+   * @param to   Index to move token to, no greater than from.
+   */
+  public void move(final int from, final int to) {
+    checkIndex(from);
+    assert to <= from : "Tokens may only move towards the front!";
+    starts[to] = starts[from];
+    ends[to] = ends[from];
+    texts[to] = texts[from];
+  }
+
+  /**
+   * Drop all tokens at and after index.
+   *
+   * @param size New number of tokens.
+   */
+  public void truncate(final int size) {
+    if (size < this.size) {
+      Arrays.fill(texts, size, this.size, null);
+      this.size = size;
+    }
+  }
+
+  /**
+   * Materialize all tokens.
+   *
+   * @return List of token texts.
+   */
+  public List<String> texts() {
+    List<String> list = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; ++i) {
+      list.add(text(i));
+    }
+    return list;
+  }
+
+  /**
+   * Join tokens with single spaces.
+   *
+   * @return Joined tokens.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(source.length());
+    for (int i = 0; i < size; ++i) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      if (texts[i] != null) {
+        sb.append(texts[i]);
+      } else {
+        sb.append(source, starts[i], ends[i]);
+      }
+    }
+    return sb.toString();
+  }
+
+  private void ensureCapacity(final int capacity) {
+    if (capacity > starts.length) {
+      int length = Math.max(capacity, 2 * starts.length);
+      starts = Arrays.copyOf(starts, length);
+      ends = Arrays.copyOf(ends, length);
+      texts = Arrays.copyOf(texts, length);
+    }
+  }
+
+  private void checkIndex(final int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for %d tokens", i, size));
+    }
+  }
+}
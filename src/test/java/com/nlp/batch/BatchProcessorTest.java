@@ -0,0 +1,56 @@
+package com.nlp.batch;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link BatchProcessor} tools and of line order.
+ *
+ * @author Kevin Crosby.
+ */
+public class BatchProcessorTest {
+  @Test
+  public void hammingChecksRoundTrip() {
+    Function<String, String> hamming = BatchProcessor.Tool.HAMMING.function();
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; ++i) {
+      long number = random.nextInt(Integer.MAX_VALUE);
+      String checks = hamming.apply(Long.toString(number));
+      assertEquals(checks, Long.toString(number), hamming.apply(number + " " + checks));
+    }
+    assertEquals("12345", hamming.apply("12345 " + hamming.apply("12345")));
+  }
+
+  @Test
+  public void hammingCorrectsOneDigit() {
+    Function<String, String> hamming = BatchProcessor.Tool.HAMMING.function();
+    String checks = hamming.apply("12345");
+    assertEquals("12345", hamming.apply("12385 " + checks));
+  }
+
+  @Test
+  public void linesKeepTheirOrder() throws IOException {
+    StringBuilder input = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 5000; ++i) { // several chunks
+      input.append(i).append('\n');
+      expected.append(i * 2).append('\n');
+    }
+    BatchProcessor processor = new BatchProcessor(line -> Long.toString(2 * Long.parseLong(line)), 3);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    long count = processor.process(
+        Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8))),
+        Channels.newChannel(output));
+    assertEquals(5000, count);
+    assertEquals(expected.toString(), new String(output.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
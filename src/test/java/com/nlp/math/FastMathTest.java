@@ -0,0 +1,67 @@
+package com.nlp.math;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Accuracy sweeps of {@link FastMath} against {@link StrictMath}, at the error bounds documented there.
+ *
+ * @author Kevin Crosby.
+ */
+public class FastMathTest {
+  private static final int N = 1 << 18;
+  private static final double EXP_MIN = -745.1332191019411;
+  private static final double EXP_MAX = 709.782712893384;
+
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  // maximum error in ulps of the exact (strict) result
+  private static double maxUlps(DoubleUnaryOperator fast, DoubleUnaryOperator strict, double[] xs) {
+    double max = 0;
+    for (double x : xs) {
+      double expected = strict.applyAsDouble(x);
+      double actual = fast.applyAsDouble(x);
+      if (expected != actual) {
+        max = Math.max(max, Math.abs(actual - expected) / Math.ulp(expected));
+      }
+    }
+    return max;
+  }
+
+  @Test
+  public void exp() {
+    assertTrue(maxUlps(FastMath::exp, StrictMath::exp, random.doubles(N, EXP_MIN, EXP_MAX).toArray()) <= 2);
+    assertTrue(maxUlps(FastMath::exp, StrictMath::exp, random.doubles(N, -30, 5).toArray()) <= 2); // log probabilities
+  }
+
+  @Test
+  public void log() {
+    assertTrue(maxUlps(FastMath::log, StrictMath::log, random.doubles(N, -700, 700).map(StrictMath::exp).toArray()) <= 3);
+    assertTrue(maxUlps(FastMath::log, StrictMath::log, random.doubles(N, 0.5, 2).toArray()) <= 3);
+  }
+
+  @Test
+  public void log1p() {
+    assertTrue(maxUlps(FastMath::log1p, StrictMath::log1p, random.doubles(N, -0.999, 10).toArray()) <= 4);
+    assertTrue(maxUlps(FastMath::log1p, StrictMath::log1p, random.doubles(N, -20, -1).map(StrictMath::exp).toArray()) <= 4);
+  }
+
+  @Test
+  public void specialValues() {
+    for (double x : new double[]{Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, EXP_MIN - 1, EXP_MAX + 1}) {
+      assertEquals(Math.exp(x), FastMath.exp(x), 0);
+    }
+    for (double x : new double[]{Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.0, -0.0, -1}) {
+      assertEquals(Math.log(x), FastMath.log(x), 0);
+    }
+    for (double x : new double[]{Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -1, -2}) {
+      assertEquals(Math.log1p(x), FastMath.log1p(x), 0);
+    }
+    assertEquals(StrictMath.log(Double.MIN_VALUE), FastMath.log(Double.MIN_VALUE), 0); // subnormal
+  }
+}
@@ -0,0 +1,77 @@
+package com.nlp.score;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ConfusionAccumulator}.
+ *
+ * @author Kevin Crosby.
+ */
+public class ConfusionAccumulatorTest {
+
+  @Test
+  public void uncountedCellsAreLeftOut() {
+    ConfusionAccumulator accumulator = new ConfusionAccumulator();
+    accumulator.record("a", "a");
+    accumulator.record("a", "b", 2);
+    accumulator.record("c", "d", 0); // created, never counted
+    ConfusionMatrix matrix = accumulator.matrix();
+    assertEquals(2, matrix.size());
+    assertEquals(1, matrix.rows());
+    assertEquals(-1, matrix.index("c"));
+    assertEquals(2, matrix.count(matrix.index("a"), matrix.index("b")));
+    assertEquals(3, accumulator.total());
+  }
+
+  @Test
+  public void snapshotsHoldWholeBatches() throws InterruptedException {
+    ConfusionAccumulator accumulator = new ConfusionAccumulator();
+    List<String> golds = ImmutableList.of("a", "a", "b");
+    List<String> systems = ImmutableList.of("a", "b", "a"); // one each of tp, fn and fp of "a"
+    int writers = 4;
+    int batches = 20_000;
+    AtomicBoolean done = new AtomicBoolean();
+    List<Thread> threads = Lists.newArrayList();
+    for (int w = 0; w < writers; ++w) {
+      Thread thread = new Thread(() -> {
+        for (int b = 0; b < batches; ++b) {
+          accumulator.record(golds, systems);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    Thread joiner = new Thread(() -> {
+      for (Thread thread : threads) {
+        try {
+          thread.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      done.set(true);
+    });
+    joiner.start();
+
+    long previous = 0;
+    do {
+      Scores scores = accumulator.snapshot();
+      long total = scores.tp() + scores.fn(); // every answer is in a gold row
+      assertEquals(total, 3 * scores.tp("a"));
+      assertEquals(scores.tp("a"), scores.fn("a"));
+      assertEquals(scores.tp("a"), scores.fp("a"));
+      assertTrue(total >= previous);
+      previous = total;
+    } while (!done.get());
+    joiner.join();
+    assertEquals(3L * writers * batches, accumulator.total());
+  }
+}
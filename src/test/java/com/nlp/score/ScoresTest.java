@@ -0,0 +1,45 @@
+package com.nlp.score;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link Scores} and {@link ConfusionMatrix}.
+ *
+ * @author Kevin Crosby.
+ */
+public class ScoresTest {
+
+  @Test
+  public void confusionsAreOrderedByCountThenCategories() {
+    Scores scores = new Scores(ImmutableMap.of(
+        "b", ImmutableMap.of("b", 5L, "a", 2L, "c", 2L),
+        "a", ImmutableMap.of("a", 7L, "c", 2L, "b", 3L)));
+    List<String> confusions = scores.getConfusions(Integer.MAX_VALUE).stream()
+        .map(Scores.Confusion::toString)
+        .collect(Collectors.toList());
+    assertEquals("[a -> b: 3, a -> c: 2, b -> a: 2, b -> c: 2]", confusions.toString());
+    assertEquals(confusions.subList(0, 2), scores.getConfusions(2).stream()
+        .map(Scores.Confusion::toString)
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void tooManyCategoriesForDenseAreSparse() {
+    ConfusionMatrix.Builder builder = ConfusionMatrix.builder().sparse(false);
+    int n = 46_341; // n * n overflows an int
+    for (int i = 0; i < n; ++i) {
+      builder.add(Integer.toString(i), Integer.toString(i), 1);
+    }
+    ConfusionMatrix matrix = builder.build();
+    assertTrue(matrix.isSparse());
+    assertEquals(n, matrix.cells());
+    assertEquals(1, matrix.count(matrix.index("46340"), matrix.index("46340")));
+  }
+}
@@ -0,0 +1,65 @@
+package com.nlp.score;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link Significance}.
+ *
+ * @author Kevin Crosby.
+ */
+public class SignificanceTest {
+  private static final double DELTA = 1e-12;
+
+  private static final List<String> GOLD = ImmutableList.of("a", "a", "b", "b", "a");
+  private static final List<String> FIRST = ImmutableList.of("a", "c", "b", "a", "a");
+  private static final List<String> SECOND = ImmutableList.of("a", "a", "b", "a", "c");
+
+  private static Scores scores(final List<String> gold, final List<String> system) {
+    Map<String, Map<String, Long>> matrix = Maps.newHashMap();
+    for (int i = 0; i < gold.size(); ++i) {
+      matrix.computeIfAbsent(gold.get(i), g -> Maps.newHashMap()).merge(system.get(i), 1L, Long::sum);
+    }
+    return new Scores(matrix);
+  }
+
+  @Test
+  public void estimatesMatchScores() {
+    Significance.Bootstrap bootstrap = Significance.of(GOLD, FIRST, SECOND).bootstrap(1, 0.95, 42);
+    Scores first = scores(GOLD, FIRST);
+    assertEquals(0.75, first.getPrecisionMicro(), DELTA);
+    assertEquals(first.getPrecisionMicro(), bootstrap.first(Significance.Metric.PRECISION_MICRO).estimate(), DELTA);
+    assertEquals(first.getRecallMicro(), bootstrap.first(Significance.Metric.RECALL_MICRO).estimate(), DELTA);
+    assertEquals(first.getF1MeasureMicro(), bootstrap.first(Significance.Metric.F1_MICRO).estimate(), DELTA);
+    assertEquals(first.getPrecision(), bootstrap.first(Significance.Metric.PRECISION_MACRO).estimate(), DELTA);
+    assertEquals(first.getRecall(), bootstrap.first(Significance.Metric.RECALL_MACRO).estimate(), DELTA);
+    assertEquals(first.getF1Measure(), bootstrap.first(Significance.Metric.F1_MACRO).estimate(), DELTA);
+    Scores second = scores(GOLD, SECOND);
+    assertEquals(second.getPrecision(), bootstrap.second(Significance.Metric.PRECISION_MACRO).estimate(), DELTA);
+    assertEquals(second.getF1Measure(), bootstrap.second(Significance.Metric.F1_MACRO).estimate(), DELTA);
+  }
+
+  @Test
+  public void resultsDependOnlyOnSeed() {
+    Significance significance = Significance.of(GOLD, FIRST, SECOND);
+    assertEquals(significance.randomization(1000, 7), significance.randomization(1000, 7));
+    assertEquals(significance.bootstrap(1000, 0.95, 7).pValue(Significance.Metric.F1_MACRO),
+        significance.bootstrap(1000, 0.95, 7).pValue(Significance.Metric.F1_MACRO), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noResamples() {
+    Significance.of(GOLD, FIRST, SECOND).bootstrap(0, 0.95, 42);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noTrials() {
+    Significance.of(GOLD, FIRST, SECOND).randomization(0, 42);
+  }
+}
@@ -0,0 +1,80 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link BinaryDictionary} write and load round trips, and of truncated or corrupt files.
+ *
+ * @author Kevin Crosby.
+ */
+public class BinaryDictionaryTest {
+  private static final Map<String, Long> WORDS = ImmutableMap.of("spelling", 500L, "spewing", 300L, "über", 7L);
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void roundTrip() throws IOException {
+    Path path = folder.newFile().toPath();
+    BinaryDictionary.write(WORDS, path);
+    BinaryDictionary dictionary = BinaryDictionary.load(path);
+    assertEquals(WORDS.size(), dictionary.size());
+    Map<String, Long> read = Maps.newHashMap();
+    dictionary.read(read::put);
+    assertEquals(WORDS, read);
+    assertEquals(7L, dictionary.count("über"));
+    assertEquals(-1, dictionary.index("spell"));
+  }
+
+  @Test
+  public void truncatedOrLongerIsRejected() throws IOException {
+    Path path = folder.newFile().toPath();
+    BinaryDictionary.write(WORDS, path);
+    byte[] bytes = Files.readAllBytes(path);
+    Path corrupt = folder.newFile().toPath();
+    for (int length = 0; length <= bytes.length + 1; ++length) {
+      if (length == bytes.length) {
+        continue;
+      }
+      Files.write(corrupt, Arrays.copyOf(bytes, length));
+      try {
+        BinaryDictionary.load(corrupt);
+        fail("length " + length);
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("binary dictionary"));
+      }
+    }
+  }
+
+  @Test
+  public void corruptHeaderIsRejected() throws IOException {
+    Path path = folder.newFile().toPath();
+    BinaryDictionary.write(WORDS, path);
+    byte[] bytes = Files.readAllBytes(path);
+    for (int i = 2 * Integer.BYTES; i < 4 * Integer.BYTES; ++i) { // number of words and blob length
+      byte[] copy = bytes.clone();
+      copy[i] = (byte) 0x80;
+      Files.write(path, copy);
+      try {
+        BinaryDictionary.load(path);
+        fail("byte " + i);
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupt binary dictionary"));
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link Deletes} against brute force enumeration of subsequences.
+ *
+ * @author Kevin Crosby.
+ */
+public class DeletesTest {
+
+  // distinct subsequences of word with d characters deleted, by every choice of positions
+  private static Set<String> bruteForce(final String word, final int d) {
+    Set<String> deletes = Sets.newHashSet();
+    bruteForce(word, 0, word.length() - d, new StringBuilder(), deletes);
+    return deletes;
+  }
+
+  private static void bruteForce(final String word, final int p, final int length, final StringBuilder prefix,
+                                 final Set<String> deletes) {
+    if (prefix.length() == length) {
+      deletes.add(prefix.toString());
+      return;
+    }
+    for (int j = p; j <= word.length() - (length - prefix.length()); ++j) {
+      prefix.append(word.charAt(j));
+      bruteForce(word, j + 1, length, prefix, deletes);
+      prefix.setLength(prefix.length() - 1);
+    }
+  }
+
+  private static List<String> enumerate(final Deletes deletes, final String word, final int d) {
+    List<String> visited = Lists.newArrayList();
+    assertTrue(deletes.forEach(word, d, delete -> {
+      assertEquals(delete.toString().hashCode(), delete.hash());
+      return visited.add(delete.toString());
+    }));
+    return visited;
+  }
+
+  @Test
+  public void distinctDeletesOfRandomWords() {
+    Random random = new Random(42);
+    Deletes deletes = new Deletes(); // reused, as in the index
+    for (int i = 0; i < 2000; ++i) {
+      int n = random.nextInt(12);
+      StringBuilder word = new StringBuilder();
+      for (int j = 0; j < n; ++j) {
+        word.append((char) ('a' + random.nextInt(3))); // small alphabet, for many repeats
+      }
+      for (int d = 0; d <= 3; ++d) {
+        List<String> visited = enumerate(deletes, word.toString(), d);
+        assertEquals("repeated delete of " + word, Sets.newHashSet(visited).size(), visited.size());
+        assertEquals("deletes of " + word, d <= n ? bruteForce(word.toString(), d) : Sets.newHashSet(),
+            Sets.newHashSet(visited));
+      }
+    }
+  }
+
+  @Test
+  public void longWords() {
+    String word = "pneumonoultramicroscopicsilicovolcanoconiosis"; // longer than a bit mask
+    assertEquals(bruteForce(word, 2), Sets.newHashSet(enumerate(new Deletes(), word, 2)));
+  }
+
+  @Test
+  public void visitorStops() {
+    int[] visits = {0};
+    assertFalse(new Deletes().forEach("balloon", 1, delete -> ++visits[0] < 2));
+    assertEquals(2, visits[0]);
+  }
+}
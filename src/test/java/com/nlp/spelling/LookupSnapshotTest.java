@@ -0,0 +1,140 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.nlp.spelling.SmartSpeller.Verbosity;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link LookupSnapshot} write and read round trips, and of stale, truncated, corrupt and foreign files.
+ *
+ * @author Kevin Crosby.
+ */
+public class LookupSnapshotTest {
+  private static final long FINGERPRINT = 0x5EED;
+  private static final List<String> WORDS = ImmutableList.of("spelling", "spewing", "selling");
+  private static final DictionarySource DICTIONARY = consumer -> {
+    consumer.accept("spelling", 500);
+    consumer.accept("spewing", 300);
+    consumer.accept("selling", 200);
+  };
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  // entry of a snapshot, as visited
+  private static List<Object> entry(final String input, final Verbosity verbosity,
+                                    final Map<String, Integer> suggestions) {
+    return ImmutableList.of(input, verbosity, ImmutableList.copyOf(suggestions.entrySet()));
+  }
+
+  private static final List<List<Object>> ENTRIES = ImmutableList.of(
+      entry("speling", Verbosity.ALL, ImmutableMap.of("spelling", 1, "spewing", 2, "selling", 2)),
+      entry("spelling", Verbosity.TOP, ImmutableMap.of("spelling", 0)),
+      entry("xyz", Verbosity.CLOSEST, ImmutableMap.of("xyz", 0)), // the input itself
+      entry("zzz", Verbosity.CLOSEST, ImmutableMap.of("zzzz", 1))); // not a word, so not written
+
+  private Path write() {
+    Path path = folder.getRoot().toPath().resolve("lookups.snapshot");
+    LookupSnapshot.write(consumer -> ENTRIES.forEach(entry -> {
+          @SuppressWarnings("unchecked")
+          List<Map.Entry<String, Integer>> suggestions = (List<Map.Entry<String, Integer>>) entry.get(2);
+          consumer.accept((String) entry.get(0), (Verbosity) entry.get(1), ImmutableMap.copyOf(suggestions));
+        }),
+        FINGERPRINT, WORDS::indexOf, path);
+    return path;
+  }
+
+  private static int read(final Path path, final long fingerprint, final List<List<Object>> visited) {
+    return LookupSnapshot.read(path, fingerprint, WORDS.size(), WORDS::get,
+        (input, verbosity, suggestions) -> visited.add(entry(input, verbosity, suggestions)));
+  }
+
+  @Test
+  public void roundTrip() {
+    Path path = write();
+    List<List<Object>> visited = Lists.newArrayList();
+    assertEquals(3, read(path, FINGERPRINT, visited));
+    assertEquals(ENTRIES.subList(0, 3), visited);
+  }
+
+  @Test
+  public void otherFingerprintIsStale() {
+    Path path = write();
+    List<List<Object>> visited = Lists.newArrayList();
+    assertEquals(-1, read(path, FINGERPRINT + 1, visited));
+    assertTrue(visited.isEmpty());
+  }
+
+  @Test
+  public void truncatedIsStale() throws IOException {
+    byte[] bytes = Files.readAllBytes(write());
+    Path truncated = folder.newFile().toPath();
+    for (int length = 0; length < bytes.length; ++length) {
+      Files.write(truncated, Arrays.copyOf(bytes, length));
+      List<List<Object>> visited = Lists.newArrayList();
+      assertEquals("length " + length, -1, read(truncated, FINGERPRINT, visited));
+      assertTrue(visited.isEmpty());
+    }
+  }
+
+  @Test
+  public void corruptIsStale() throws IOException {
+    byte[] bytes = Files.readAllBytes(write());
+    Path corrupt = folder.newFile().toPath();
+    int header = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+    for (int i = header; i < bytes.length; ++i) { // out of bounds, so stale, or still in bounds, so whole
+      for (byte value : new byte[]{-1, Byte.MAX_VALUE}) {
+        byte[] copy = bytes.clone();
+        copy[i] = value;
+        Files.write(corrupt, copy);
+        List<List<Object>> visited = Lists.newArrayList();
+        int read = read(corrupt, FINGERPRINT, visited);
+        assertTrue("byte " + i, read == -1 || read == 3);
+        assertEquals(read == -1 ? 0 : 3, visited.size());
+      }
+    }
+    byte[] longer = Arrays.copyOf(bytes, bytes.length + 1);
+    Files.write(corrupt, longer);
+    assertEquals(-1, read(corrupt, FINGERPRINT, Lists.newArrayList()));
+  }
+
+  @Test
+  public void foreignIsStale() throws IOException {
+    Path foreign = folder.newFile().toPath();
+    Files.write(foreign, "spelling 500\nspewing 300\nselling 200\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals(-1, read(foreign, FINGERPRINT, Lists.newArrayList()));
+  }
+
+  @Test
+  public void spellerWarmsOnlyUnderTheSameSettings() throws IOException {
+    Path path = folder.newFile().toPath();
+    SmartSpeller speller = new SmartSpeller(DICTIONARY);
+    speller.setLexicon(Dawg.of(ImmutableList.of("spelt")));
+    speller.suggestions("speling", Verbosity.ALL);
+    speller.suggestions("selling", Verbosity.TOP);
+    assertEquals(2, speller.saveSnapshot(path));
+
+    SmartSpeller same = new SmartSpeller(DICTIONARY);
+    same.setLexicon(Dawg.of(ImmutableList.of("spelt")));
+    assertEquals(2, same.loadSnapshot(path));
+
+    SmartSpeller other = new SmartSpeller(DICTIONARY);
+    other.setLexicon(Dawg.of(ImmutableList.of("spelx"))); // same size, other word
+    assertEquals(0, other.loadSnapshot(path));
+  }
+}
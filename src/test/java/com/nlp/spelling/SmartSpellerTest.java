@@ -0,0 +1,131 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link SmartSpeller} lookups at each verbosity, over a small dictionary.
+ *
+ * @author Kevin Crosby.
+ */
+public class SmartSpellerTest {
+  private static final DictionarySource DICTIONARY = consumer -> {
+    consumer.accept("spelling", 500);
+    consumer.accept("spewing", 300);
+    consumer.accept("selling", 200);
+    consumer.accept("smelling", 100);
+    consumer.accept("spell", 50);
+    consumer.accept("spieling", 10);
+  };
+  private static final List<String> INPUTS = ImmutableList.of("speling", "spelling", "sxelling", "spel", "xyz");
+
+  private static SmartSpeller speller;
+
+  @BeforeClass
+  public static void setUp() {
+    speller = new SmartSpeller(DICTIONARY);
+  }
+
+  @Test
+  public void allIsRankedByDistanceThenFrequency() {
+    Map<String, Integer> all = speller.suggestions("speling", SmartSpeller.Verbosity.ALL);
+    assertEquals("[spelling, spewing, spieling, selling, smelling]", all.keySet().toString());
+    List<Entry<String, Integer>> entries = Lists.newArrayList(all.entrySet());
+    for (int i = 1; i < entries.size(); ++i) {
+      assertTrue(entries.get(i - 1).getValue() <= entries.get(i).getValue());
+    }
+  }
+
+  @Test
+  public void closestIsTheNearestOfAll() {
+    for (String input : INPUTS) {
+      Map<String, Integer> all = speller.suggestions(input, SmartSpeller.Verbosity.ALL);
+      Map<String, Integer> closest = speller.suggestions(input, SmartSpeller.Verbosity.CLOSEST);
+      int best = Iterables.getFirst(all.values(), 0);
+      List<String> expected = Lists.newArrayList();
+      all.forEach((suggestion, distance) -> {
+        if (distance == best) {
+          expected.add(suggestion);
+        }
+      });
+      assertEquals(input, expected, Lists.newArrayList(closest.keySet()));
+    }
+  }
+
+  @Test
+  public void topIsTheFirstOfAll() {
+    for (String input : INPUTS) {
+      Map<String, Integer> all = speller.suggestions(input, SmartSpeller.Verbosity.ALL);
+      Map<String, Integer> top = speller.suggestions(input, SmartSpeller.Verbosity.TOP);
+      assertEquals(input, Iterables.getFirst(all.entrySet(), null), Iterables.getOnlyElement(top.entrySet()));
+      assertEquals(input, Iterables.getFirst(all.keySet(), null), speller.correct(input));
+    }
+  }
+
+  @Test
+  public void unknownWordsPassThrough() {
+    assertEquals("xyz", speller.correct("xyz"));
+    assertEquals("$12", speller.correct("$12"));
+  }
+
+  @Test
+  public void learnsFromEveryLookupButNotFromItself() {
+    SmartSpeller learner = new SmartSpeller(DICTIONARY);
+    learner.startLearning(1, 1, TimeUnit.DAYS); // folded on demand only
+    try {
+      learner.accept("spelt"); // learned only
+      learner.fold();
+      double spelt = learner.logProbability("spelt");
+      double selling = learner.logProbability("selling");
+
+      learner.correct("selling");
+      learner.candidates("selling");
+      learner.suggestions("selling", SmartSpeller.Verbosity.CLOSEST);
+      learner.correct("spelt");
+      learner.candidates("spelt");
+      learner.fold();
+      // selling seen thrice, at 100,000 corpus uses each, while spelt, only learned, is not counted again
+      assertEquals(selling - spelt + Math.log((200 + 300_000 + 1.0) / (200 + 1)),
+          learner.logProbability("selling") - learner.logProbability("spelt"), 1e-9);
+      assertEquals("spelt", learner.correct("spelt")); // indexed, being new
+    } finally {
+      learner.stopLearning();
+    }
+  }
+
+  @Test
+  public void indexesOnlyNewWordsLearned() {
+    SmartSpeller learner = new SmartSpeller(DICTIONARY);
+    learner.startLearning(1, 1, TimeUnit.DAYS); // folded on demand only
+    try {
+      double selling = learner.logProbability("selling");
+      learner.accept("selling");
+      learner.fold();
+      assertTrue(learner.overlays().isEmpty()); // counted, not indexed
+      assertTrue(learner.logProbability("selling") > selling);
+
+      learner.accept("spelt");
+      learner.fold();
+      assertEquals("[" + SmartSpeller.LEARNED + "]", learner.overlays().toString());
+
+      assertTrue(learner.removeOverlay(SmartSpeller.LEARNED)); // forgets counts, too
+      assertEquals(selling, learner.logProbability("selling"), 1e-9);
+      learner.stopLearning();
+      learner.fold(); // nothing to fold
+      assertTrue(learner.overlays().isEmpty());
+    } finally {
+      learner.stopLearning();
+    }
+  }
+}
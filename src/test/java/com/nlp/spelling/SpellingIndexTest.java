@@ -0,0 +1,87 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AtomicLongMap;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link SpellingIndex} lookups against brute force edit distances.
+ *
+ * @author Kevin Crosby.
+ */
+public class SpellingIndexTest {
+  private static final int EDIT_DISTANCE_MAX = SpellingIndex.EDIT_DISTANCE_MAX;
+
+  // at least 3 letters, so words within the maximum edit distance always share a non-empty delete; as in SymSpell,
+  // longer words are not deleted down to nothing, so e.g. "bb" is no suggestion for "c"
+  private static String word(final Random random, final int max) {
+    int n = 3 + random.nextInt(max - 2);
+    StringBuilder word = new StringBuilder();
+    for (int j = 0; j < n; ++j) {
+      word.append((char) ('a' + random.nextInt(4)));
+    }
+    return word.toString();
+  }
+
+  // dictionary words within the maximum edit distance, by comparing against every one
+  private static Map<String, Integer> bruteForce(final AtomicLongMap<String> words, final String input) {
+    Map<String, Integer> suggestions = Maps.newHashMap();
+    for (String word : words.asMap().keySet()) {
+      int distance = SpellCorrect.editDistance(input, word);
+      if (distance <= EDIT_DISTANCE_MAX) {
+        suggestions.put(word, distance);
+      }
+    }
+    return suggestions;
+  }
+
+  @Test
+  public void lookupFindsAllAndOnlyClosest() {
+    Random random = new Random(42);
+    AtomicLongMap<String> words = AtomicLongMap.create();
+    for (int i = 0; i < 500; ++i) {
+      words.addAndGet(word(random, 7), 1 + random.nextInt(100));
+    }
+    SpellingIndex index = new SpellingIndex(words);
+    for (int i = 0; i < 1000; ++i) {
+      String input = word(random, 8);
+      Map<String, Integer> expected = bruteForce(words, input);
+      assertEquals("all of " + input, expected, index.lookup(input, false));
+
+      int best = expected.values().stream().mapToInt(Integer::intValue).min().orElse(0);
+      Map<String, Integer> closest = Maps.newHashMap(Maps.filterValues(expected, distance -> distance == best));
+      assertEquals("closest of " + input, closest, index.lookup(input, true));
+    }
+  }
+
+  @Test
+  public void singleLetters() {
+    AtomicLongMap<String> words = AtomicLongMap.create();
+    words.put("a", 1);
+    words.put("b", 1);
+    words.put("ab", 1);
+    Map<String, Integer> expected = Maps.newHashMap();
+    expected.put("a", 0);
+    expected.put("b", 1); // via the empty delete of single letters
+    expected.put("ab", 1);
+    assertEquals(expected, new SpellingIndex(words).lookup("a", false));
+  }
+
+  @Test
+  public void budgetTruncatesLookup() {
+    AtomicLongMap<String> words = AtomicLongMap.create();
+    words.put("spelling", 10);
+    words.put("spell", 5);
+    SpellingIndex index = new SpellingIndex(words);
+    Budget budget = Budget.operations(1);
+    index.lookup("speling", false, budget);
+    assertTrue(budget.isTruncated());
+    assertEquals(1, budget.getSpent());
+  }
+}
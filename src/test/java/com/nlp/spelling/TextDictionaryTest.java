@@ -0,0 +1,42 @@
+package com.nlp.spelling;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link TextDictionary} parsing entries as a {@link Scanner} does.
+ *
+ * @author Kevin Crosby.
+ */
+public class TextDictionaryTest {
+  private static final List<String> LINES = ImmutableList.of("word 5", "word\t5", "word", "word ", "word  5", " word 5",
+      "word 5 extra", "word -5", "word +5", "word 1,000", "word 1,00", "word 5x", "word 00012",
+      "word 999999999999999999", "word 9223372036854775807", "word 99999999999999999999", "word ５",
+      "word 5", "");
+
+  @Test
+  public void countsParseAsScannerDoes() {
+    List<String> expected = Lists.newArrayList();
+    for (String line : LINES) {
+      Scanner scanner = new Scanner(line).useDelimiter("\\s");
+      if (scanner.hasNext()) {
+        String word = scanner.next();
+        expected.add(word + "=" + (scanner.hasNextLong() ? scanner.nextLong() : 1));
+      }
+    }
+    byte[] bytes = String.join("\n", LINES).getBytes(StandardCharsets.UTF_8);
+    List<String> actual = Lists.newArrayList();
+    new TextDictionary(() -> new ByteArrayInputStream(bytes)).read((word, count) -> actual.add(word + "=" + count));
+    assertEquals(expected, actual);
+    assertEquals("word=-5", actual.get(7));
+    assertEquals("word=1000", actual.get(9));
+  }
+}